@@ -32,6 +32,8 @@ plugins {
     id("nebula.maven-apache-license") version "17.3.2"
 
     id("org.openrewrite.rewrite") version "4.0.0"
+
+    id("me.champeau.gradle.jmh") version "0.5.3"
 }
 
 apply(plugin = "nebula.publish-verification")
@@ -78,6 +80,15 @@ configurations.all {
     }
 }
 
+// The allocation budget test drives javac directly, to measure mapping on its own, so it is the only test with
+// tools.jar on its classpath. The rest load javac the way the parser does outside of tests.
+val allocationTest: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+configurations[allocationTest.implementationConfigurationName].extendsFrom(configurations.testImplementation.get())
+configurations[allocationTest.runtimeOnlyConfigurationName].extendsFrom(configurations.testRuntimeOnly.get())
+
 val rewriteVersion = "latest.release"
 dependencies {
     compileOnly(files("${System.getProperty("java.home")}/../lib/tools.jar"))
@@ -97,6 +108,16 @@ dependencies {
 
     testImplementation("org.openrewrite:rewrite-test:$rewriteVersion")
     testRuntimeOnly("ch.qos.logback:logback-classic:1.0.13")
+
+    "allocationTestImplementation"(files("${System.getProperty("java.home")}/../lib/tools.jar"))
+
+    // the phase benchmarks drive javac directly
+    jmh(files("${System.getProperty("java.home")}/../lib/tools.jar"))
+    // the differential benchmark compares with the Java 11 parser, run on a Java 11 JVM
+    jmh("org.openrewrite:rewrite-java-11:$rewriteVersion")
+    jmh("org.openjdk.jmh:jmh-core:1.28")
+    jmh("org.openjdk.jol:jol-core:0.16")
+    jmh("org.openjdk.jmh:jmh-generator-annprocess:1.28")
 }
 
 tasks.withType(KotlinCompile::class.java).configureEach {
@@ -110,11 +131,57 @@ tasks.named<JavaCompile>("compileJava") {
     targetCompatibility = JavaVersion.VERSION_1_8.toString()
 }
 
+// The flight recorder events extend jdk.jfr.Event, which JDK 8 has had since 8u262, as has the JDK 8 CI builds on.
+// An older JDK 8 builds the parser without them, and it then records no events.
+if (!file("${System.getProperty("java.home")}/lib/jfr.jar").exists()) {
+    tasks.named<JavaCompile>("compileJava") {
+        exclude("**/Java8ParserFlightRecorder.java")
+    }
+    tasks.named<KotlinCompile>("compileTestKotlin") {
+        exclude("**/Java8ParserEventsTest.kt")
+    }
+}
+
 tasks.named<Test>("test") {
     useJUnitPlatform()
     jvmArgs = listOf("-XX:+UnlockDiagnosticVMOptions", "-XX:+ShowHiddenFrames")
 }
 
+// e.g. ./gradlew allocationTest -PallocationBudgets=record on the JDK CI builds on, after a change meant to move them
+val allocationTestTask = tasks.register<Test>("allocationTest") {
+    group = "verification"
+    description = "Checks the bytes that mapping each kind of construct allocates against the recorded budgets."
+    testClassesDirs = allocationTest.output.classesDirs
+    classpath = allocationTest.runtimeClasspath
+    useJUnitPlatform()
+    systemProperty("allocationBudgets", project.findProperty("allocationBudgets")?.toString() ?: "check")
+    systemProperty("allocationBudgetsFile", "$projectDir/allocation-budgets.tsv")
+    // recording has to measure every construct, and checking has to see a change to the recorded budgets
+    outputs.upToDateWhen { false }
+}
+
+tasks.named("check") {
+    dependsOn(allocationTestTask)
+}
+
+configure<me.champeau.gradle.JMHPluginExtension> {
+    jmhVersion = "1.28"
+    duplicateClassesStrategy = DuplicatesStrategy.WARN
+}
+
+// e.g. ./gradlew jmhBaseline -Pbaseline=record, then ./gradlew jmhBaseline after a change
+tasks.register<JavaExec>("jmhBaseline") {
+    group = "benchmark"
+    description = "Records the parser benchmarks as a baseline, or compares a run against it."
+    dependsOn("jmhClasses")
+    classpath = sourceSets["jmh"].runtimeClasspath
+    main = "org.openrewrite.java.benchmarks.BenchmarkBaseline"
+    args = listOf(
+        project.findProperty("baseline")?.toString() ?: "compare",
+        project.findProperty("baselineFile")?.toString() ?: "$projectDir/jmh-baseline.tsv"
+    ) + (project.findProperty("benchmarks")?.toString()?.split(",") ?: emptyList())
+}
+
 configure<ContactsExtension> {
     val j = Contact("jkschneider@gmail.com")
     j.moniker("Jonathan Schneider")
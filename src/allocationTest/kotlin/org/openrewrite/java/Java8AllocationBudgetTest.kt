@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import com.sun.source.util.JavacTask
+import com.sun.tools.javac.api.JavacTool
+import com.sun.tools.javac.tree.JCTree
+import org.junit.jupiter.api.AfterAll
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Assumptions.assumeTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.DynamicTest
+import org.junit.jupiter.api.DynamicTest.dynamicTest
+import org.junit.jupiter.api.TestFactory
+import org.openrewrite.InMemoryExecutionContext
+import org.openrewrite.Parser
+import org.openrewrite.java.tree.JavaType
+import org.openrewrite.java.tree.Space
+import java.io.ByteArrayInputStream
+import java.lang.management.ManagementFactory
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.ConcurrentHashMap
+import javax.tools.DiagnosticListener
+import javax.tools.JavaFileObject
+
+/**
+ * Measures the bytes that mapping javac's trees to Rewrite's allocates on the mapping thread, as the marginal cost
+ * of adding more of one kind of construct to a source, so that the fixed cost of a compilation unit cancels out.
+ * Sources are parsed and attributed by javac once, outside of the measurement, since javac's own allocation would
+ * otherwise dwarf that of mapping. Each budget is what was recorded for the construct on the JDK that CI builds
+ * on, plus [HEADROOM], so that a change which adds garbage per node fails here; the scaling assertion catches
+ * per-node costs that grow with the size of the source. A change that is meant to move the budgets records them
+ * again with `./gradlew allocationTest -PallocationBudgets=record`, and a construct that has never been recorded is
+ * held to its [Construct.ceiling].
+ */
+class Java8AllocationBudgetTest {
+    companion object {
+        private val threads = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        private const val COUNT = 200
+
+        /**
+         * Allowed over a recorded budget. Runs on the same JDK vary by a few percent, and JDK 8 updates by more.
+         */
+        private const val HEADROOM = 0.25
+
+        /**
+         * The bytes per KB of source that no construct may exceed when it has no recorded budget.
+         */
+        private const val PER_KB_CEILING = 512L * 1024
+
+        private val recording = System.getProperty("allocationBudgets") == "record"
+        private val budgetsFile: Path? = System.getProperty("allocationBudgetsFile")?.let { Paths.get(it) }
+        private val measured = ConcurrentHashMap<String, Long>()
+
+        private val recorded: Map<String, Long> by lazy {
+            if (budgetsFile == null || !Files.exists(budgetsFile)) emptyMap()
+            else Files.readAllLines(budgetsFile)
+                .filter { it.isNotEmpty() && !it.startsWith("#") }
+                .associate { line -> line.split('\t').let { it[0] to it[1].toLong() } }
+        }
+
+        @AfterAll
+        @JvmStatic
+        fun record() {
+            if (recording && budgetsFile != null) {
+                Files.write(budgetsFile, listOf("# bytes allocated by mapping, recorded on " +
+                    System.getProperty("java.vm.name") + " " + System.getProperty("java.version")) +
+                    measured.toSortedMap().map { (key, bytes) -> "$key\t$bytes" })
+            }
+        }
+    }
+
+    /**
+     * @param ceiling The bytes per node that mapping the construct may allocate when it has no recorded budget.
+     */
+    enum class Construct(val ceiling: Long, val source: (Int) -> String) {
+        BINARY(2 * 1024, { n ->
+            // short chains, so that the depth javac attributes recursively doesn't grow with the count
+            "class A {\n${(1..n).chunked(10).joinToString("\n") { "int i${it[0]} = ${it.joinToString(" + ")};" }}\n}"
+        }),
+        METHOD_INVOCATION(4 * 1024, { n ->
+            "class A { void m(String s) {\n${(1..n).joinToString("\n") { "s.length();" }}\n} }"
+        }),
+        FIELD(6 * 1024, { n ->
+            "import java.util.*;\nclass A {\n${(1..n).joinToString("\n") { "private List<String> f$it = null;" }}\n}"
+        }),
+        LAMBDA(12 * 1024, { n ->
+            "import java.util.function.*;\nclass A { void m() {\n" +
+                (1..n).joinToString("\n") { "Function<Integer, Integer> f$it = x -> x + $it;" } + "\n} }"
+        }),
+        ANNOTATED_METHOD(12 * 1024, { n ->
+            "class A {\n${(1..n).joinToString("\n") { "@Deprecated /* c */ void m$it(int a, String b) { }" }}\n}"
+        }),
+        STRING_LITERAL(2 * 1024, { n ->
+            "class A { String[] s = {\n${(1..n).joinToString(",\n") { "\"literal $it\"" }}\n}; }"
+        })
+    }
+
+    @BeforeEach
+    fun supported() {
+        assumeTrue(threads.isThreadAllocatedMemorySupported && threads.isThreadAllocatedMemoryEnabled)
+    }
+
+    /**
+     * Parsed and attributed with the options the parser gives javac that affect the shape of the trees.
+     */
+    private fun attribute(source: String): JCTree.JCCompilationUnit {
+        val tool = JavacTool.create()
+        val input = Parser.Input(Paths.get("A.java")) { ByteArrayInputStream(source.toByteArray()) }
+        val task = tool.getTask(null, tool.getStandardFileManager(null, null, StandardCharsets.UTF_8),
+            DiagnosticListener<JavaFileObject> { }, listOf("-proc:none", "-XDallowStringFolding=false"), null,
+            listOf(Java8ParserInputFileObject(input))) as JavacTask
+        val cu = task.parse().single() as JCTree.JCCompilationUnit
+        task.analyze()
+        return cu
+    }
+
+    /**
+     * The least of several mappings of the same trees, which mapping doesn't change, to discount class loading and
+     * code that hasn't been compiled.
+     */
+    private fun allocatedBytes(source: String): Long {
+        val cu = attribute(source)
+        var least = Long.MAX_VALUE
+        repeat(8) {
+            val thread = Thread.currentThread().id
+            val before = threads.getThreadAllocatedBytes(thread)
+            ReloadableJava8ParserVisitor(Paths.get("A.java"), source, false, emptyList(),
+                HashMap<String, JavaType.Class>(), InMemoryExecutionContext()).scan(cu, Space.EMPTY)
+            val allocated = threads.getThreadAllocatedBytes(thread) - before
+            least = minOf(least, allocated)
+        }
+        return least
+    }
+
+    /**
+     * Check [bytes] against the budget recorded for [key], or keep them to be recorded as its budget.
+     */
+    private fun assertWithinBudget(key: String, bytes: Long, ceiling: Long, description: String) {
+        if (recording) {
+            measured[key] = bytes
+            return
+        }
+        val budget = recorded[key]?.let { (it * (1 + HEADROOM)).toLong() } ?: ceiling
+        assertTrue(bytes <= budget) { "$description $bytes bytes, over its budget of $budget" }
+    }
+
+    private fun marginalBytesPerNode(construct: Construct, count: Int): Long =
+        (allocatedBytes(construct.source(2 * count)) - allocatedBytes(construct.source(count))) / count
+
+    @TestFactory
+    fun allocationPerNode(): List<DynamicTest> = Construct.values().map { construct ->
+        dynamicTest(construct.name) { assertAllocationPerNode(construct) }
+    }
+
+    @TestFactory
+    fun allocationPerKbOfSource(): List<DynamicTest> = Construct.values().map { construct ->
+        dynamicTest(construct.name) { assertAllocationPerKbOfSource(construct) }
+    }
+
+    private fun assertAllocationPerNode(construct: Construct) {
+        val perNode = marginalBytesPerNode(construct, COUNT)
+        assertWithinBudget("$construct.perNode", perNode, construct.ceiling, "$construct allocates per node")
+
+        // a cost per node that grows with the number of nodes means parse allocation is super-linear
+        val perNodeAtScale = marginalBytesPerNode(construct, 4 * COUNT)
+        assertTrue(perNodeAtScale <= 2 * maxOf(perNode, 1024)) {
+            "$construct allocates $perNode bytes per node at $COUNT nodes, but $perNodeAtScale at ${4 * COUNT}"
+        }
+    }
+
+    private fun assertAllocationPerKbOfSource(construct: Construct) {
+        val small = construct.source(COUNT)
+        val large = construct.source(2 * COUNT)
+        val perKb = (allocatedBytes(large) - allocatedBytes(small)) * 1024 / (large.length - small.length)
+        assertWithinBudget("$construct.perKb", perKb, PER_KB_CEILING, "$construct allocates per KB of source")
+    }
+}
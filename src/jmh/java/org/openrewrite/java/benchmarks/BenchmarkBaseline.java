@@ -0,0 +1,277 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.BenchmarkResult;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.util.ListStatistics;
+import org.openjdk.jmh.util.Statistics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Records the parser benchmarks as a baseline file, and compares a later run against it, so that a change to the
+ * parser can be accepted or rejected locally. Each benchmark's iteration scores are kept, rather than only their
+ * mean, so that a difference is only reported as a regression when it is statistically significant.
+ * <p>
+ * Usage: {@code BenchmarkBaseline record|compare <baseline file> [benchmark regex...]}. Compare exits with a
+ * status of 1 when any benchmark regressed.
+ */
+public class BenchmarkBaseline {
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Benchmarks run when none are named. The rest are either too slow to run routinely, or measure something other
+     * than a change to the parser.
+     */
+    private static final List<String> DEFAULT_BENCHMARKS = Arrays.asList(
+            Java8ParserThroughputBenchmark.class.getSimpleName(),
+            Java8ParserPhaseBenchmark.class.getSimpleName()
+    );
+
+    private static final double CONFIDENCE = 0.99;
+
+    /**
+     * Significant differences smaller than this fraction of the baseline are not reported as regressions, since
+     * they are within what unrelated changes to the machine typically cause.
+     */
+    private static final double MIN_CHANGE = 0.02;
+
+    private static final String ALLOCATION = "alloc";
+    private static final String SCORE = "score";
+
+    static class Metric {
+        final String benchmark;
+        final String params;
+        final String metric;
+        final Mode mode;
+        final String unit;
+        final double[] samples;
+
+        Metric(String benchmark, String params, String metric, Mode mode, String unit, double[] samples) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.metric = metric;
+            this.mode = mode;
+            this.unit = unit;
+            this.samples = samples;
+        }
+
+        String key() {
+            return benchmark + '\t' + params + '\t' + metric;
+        }
+
+        boolean higherIsBetter() {
+            return SCORE.equals(metric) && mode == Mode.Throughput;
+        }
+
+        String kind() {
+            return ALLOCATION.equals(metric) ? "allocation" : mode == Mode.Throughput ? "throughput" : "latency";
+        }
+
+        Statistics statistics() {
+            return new ListStatistics(samples);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        if (args.length < 2 || !("record".equals(args[0]) || "compare".equals(args[0]))) {
+            System.err.println("Usage: BenchmarkBaseline record|compare <baseline file> [benchmark regex...]");
+            System.exit(2);
+        }
+
+        Path baseline = Paths.get(args[1]);
+        List<String> includes = args.length > 2 ?
+                Arrays.asList(args).subList(2, args.length) :
+                DEFAULT_BENCHMARKS;
+
+        if ("record".equals(args[0])) {
+            write(baseline, run(includes));
+            System.out.println("Recorded baseline " + baseline.toAbsolutePath());
+        } else {
+            Map<String, Metric> previous = read(baseline);
+            boolean regressed = compare(previous, run(includes));
+            System.exit(regressed ? 1 : 0);
+        }
+    }
+
+    static List<Metric> run(List<String> includes) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder().addProfiler(GCProfiler.class).shouldFailOnError(true);
+        for (String include : includes) {
+            options.include(include);
+        }
+
+        List<Metric> metrics = new ArrayList<>();
+        for (RunResult run : new Runner(options.build()).run()) {
+            BenchmarkParams benchmark = run.getParams();
+            List<Double> scores = new ArrayList<>();
+            List<Double> allocations = new ArrayList<>();
+            String unit = run.getPrimaryResult().getScoreUnit();
+            String allocationUnit = null;
+
+            // iterations of every fork, since the variance between forks is part of what a baseline must capture
+            for (BenchmarkResult fork : run.getBenchmarkResults()) {
+                for (IterationResult iteration : fork.getIterationResults()) {
+                    scores.add(iteration.getPrimaryResult().getScore());
+                    for (Map.Entry<String, Result> secondary : iteration.getSecondaryResults().entrySet()) {
+                        if (secondary.getKey().endsWith("gc.alloc.rate.norm")) {
+                            allocations.add(secondary.getValue().getScore());
+                            allocationUnit = secondary.getValue().getScoreUnit();
+                        }
+                    }
+                }
+            }
+
+            String params = params(benchmark);
+            metrics.add(new Metric(benchmark.getBenchmark(), params, SCORE, benchmark.getMode(), unit, toArray(scores)));
+            if (allocationUnit != null) {
+                metrics.add(new Metric(benchmark.getBenchmark(), params, ALLOCATION, benchmark.getMode(),
+                        allocationUnit, toArray(allocations)));
+            }
+        }
+        return metrics;
+    }
+
+    static boolean compare(Map<String, Metric> baseline, List<Metric> current) {
+        boolean regressed = false;
+        System.out.println();
+        System.out.printf("%-60s %-10s %-28s %-28s %9s  %s%n", "Benchmark", "Kind", "Baseline", "Current", "Change", "");
+
+        for (Metric now : current) {
+            Metric then = baseline.get(now.key());
+            String name = now.benchmark.substring(now.benchmark.lastIndexOf('.', now.benchmark.lastIndexOf('.') - 1) + 1) +
+                    ("".equals(now.params) ? "" : " " + now.params);
+            if (then == null) {
+                System.out.printf("%-60s %-10s %-28s %-28s %9s  %s%n", name, now.kind(), "-",
+                        format(now.statistics(), now.unit), "-", "new");
+                continue;
+            }
+
+            Statistics before = then.statistics();
+            Statistics after = now.statistics();
+            double change = (after.getMean() - before.getMean()) / before.getMean();
+            boolean worse = now.higherIsBetter() ? change < 0 : change > 0;
+
+            String verdict;
+            if (before.getN() < 2 || after.getN() < 2) {
+                verdict = "too few samples";
+            } else if (!before.isDifferent(after, CONFIDENCE) || Math.abs(change) < MIN_CHANGE) {
+                verdict = "";
+            } else if (worse) {
+                verdict = "REGRESSION";
+                regressed = true;
+            } else {
+                verdict = "improvement";
+            }
+
+            System.out.printf("%-60s %-10s %-28s %-28s %+8.1f%%  %s%n", name, now.kind(),
+                    format(before, then.unit), format(after, now.unit), change * 100, verdict);
+        }
+
+        System.out.printf("%nIntervals are at %.0f%% confidence. Changes under %.0f%% are not reported.%n",
+                CONFIDENCE * 100, MIN_CHANGE * 100);
+        return regressed;
+    }
+
+    static void write(Path baseline, List<Metric> metrics) throws IOException {
+        if (baseline.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(baseline.toAbsolutePath().getParent());
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(baseline, StandardCharsets.UTF_8)) {
+            out.write("# Java8Parser benchmark baseline, recorded on " + System.getProperty("java.vm.name") + " " +
+                    System.getProperty("java.version") + "\n");
+            out.write("format\t" + FORMAT_VERSION + "\n");
+            for (Metric metric : metrics) {
+                StringJoiner samples = new StringJoiner(",");
+                for (double sample : metric.samples) {
+                    samples.add(Double.toString(sample));
+                }
+                out.write(metric.key() + '\t' + metric.mode.shortLabel() + '\t' + metric.unit + '\t' + samples + '\n');
+            }
+        }
+    }
+
+    static Map<String, Metric> read(Path baseline) throws IOException {
+        Map<String, Metric> metrics = new LinkedHashMap<>();
+        boolean versioned = false;
+        for (String line : Files.readAllLines(baseline, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            // a trailing empty params column must survive the split
+            String[] columns = line.split("\t", -1);
+            if (!versioned) {
+                if (columns.length != 2 || !"format".equals(columns[0]) ||
+                        Integer.parseInt(columns[1]) != FORMAT_VERSION) {
+                    throw new IllegalStateException("Expected a baseline in format " + FORMAT_VERSION +
+                            ", but " + baseline + " begins with " + line + ". Record a new baseline.");
+                }
+                versioned = true;
+                continue;
+            }
+
+            String[] samples = columns[5].split(",");
+            double[] values = new double[samples.length];
+            for (int i = 0; i < samples.length; i++) {
+                values[i] = Double.parseDouble(samples[i]);
+            }
+            Metric metric = new Metric(columns[0], columns[1], columns[2], Mode.deepValueOf(columns[3]),
+                    columns[4], values);
+            metrics.put(metric.key(), metric);
+        }
+        return metrics;
+    }
+
+    private static String params(BenchmarkParams benchmark) {
+        StringJoiner params = new StringJoiner(",");
+        for (String key : benchmark.getParamsKeys()) {
+            params.add(key + "=" + benchmark.getParam(key));
+        }
+        return params.toString();
+    }
+
+    private static String format(Statistics statistics, String unit) {
+        if (statistics.getN() < 2) {
+            return String.format("%.3f %s", statistics.getMean(), unit);
+        }
+        double[] interval = statistics.getConfidenceIntervalAt(CONFIDENCE);
+        return String.format("%.3f \u00b1%.3f %s", statistics.getMean(), (interval[1] - interval[0]) / 2, unit);
+    }
+
+    private static double[] toArray(List<Double> values) {
+        double[] array = new double[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
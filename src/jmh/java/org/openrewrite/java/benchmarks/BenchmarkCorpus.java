@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.benchmarks;
+
+import org.openrewrite.Parser;
+import org.openrewrite.internal.StringUtils;
+import org.openrewrite.java.Java8Parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The sources benchmarks parse. Point the {@code rewrite.benchmark.corpus} system property at a directory to parse
+ * every {@code .java} file under it, otherwise the parser's bundled warm-up corpus is used.
+ */
+public class BenchmarkCorpus {
+    private final List<Path> paths;
+    private final List<byte[]> sources;
+
+    private BenchmarkCorpus(List<Path> paths, List<byte[]> sources) {
+        this.paths = paths;
+        this.sources = sources;
+    }
+
+    public static BenchmarkCorpus load() {
+        String corpus = System.getProperty("rewrite.benchmark.corpus");
+        return corpus == null ? bundled() : directory(Paths.get(corpus));
+    }
+
+    public static BenchmarkCorpus bundled() {
+        List<Path> paths = new ArrayList<>();
+        List<byte[]> sources = new ArrayList<>();
+        for (String name : new String[]{"WarmupStatements.java", "WarmupDeclarations.java"}) {
+            InputStream source = Java8Parser.class.getResourceAsStream("warmup/" + name);
+            paths.add(Paths.get("org/openrewrite/java/warmup/" + name));
+            sources.add(StringUtils.readFully(source).getBytes(StandardCharsets.UTF_8));
+        }
+        return new BenchmarkCorpus(paths, sources);
+    }
+
+    public static BenchmarkCorpus directory(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            List<Path> paths = files.filter(f -> f.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+            List<byte[]> sources = new ArrayList<>(paths.size());
+            for (Path path : paths) {
+                sources.add(Files.readAllBytes(path));
+            }
+            return new BenchmarkCorpus(paths, sources);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static BenchmarkCorpus of(List<Path> paths, List<String> sources) {
+        return new BenchmarkCorpus(paths, sources.stream()
+                .map(s -> s.getBytes(StandardCharsets.UTF_8))
+                .collect(Collectors.toList()));
+    }
+
+    public List<Parser.Input> inputs() {
+        List<Parser.Input> inputs = new ArrayList<>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            byte[] source = sources.get(i);
+            inputs.add(new Parser.Input(paths.get(i), () -> new ByteArrayInputStream(source)));
+        }
+        return inputs;
+    }
+
+    public Path path(int i) {
+        return paths.get(i);
+    }
+
+    public String source(int i) {
+        return new String(sources.get(i), StandardCharsets.UTF_8);
+    }
+
+    public int files() {
+        return paths.size();
+    }
+
+    public long bytes() {
+        return sources.stream().mapToLong(s -> s.length).sum();
+    }
+}
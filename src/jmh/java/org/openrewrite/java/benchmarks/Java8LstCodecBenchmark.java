@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.TreeSerializer;
+import org.openrewrite.internal.StringUtils;
+import org.openrewrite.java.Java8LstCodec;
+import org.openrewrite.java.Java8Parser;
+import org.openrewrite.java.tree.J;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes the units parsed from the warm-up corpus with {@link Java8LstCodec} and, for comparison,
+ * with {@link TreeSerializer}. The encoded size of each is printed during setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class Java8LstCodecBenchmark {
+    List<J.CompilationUnit> cus;
+    byte[] encoded;
+    List<byte[]> serialized;
+    TreeSerializer<J.CompilationUnit> serializer = new TreeSerializer<>();
+
+    @Setup
+    public void setup() throws IOException {
+        cus = Java8Parser.builder().build().parse(new InMemoryExecutionContext(),
+                corpus("WarmupStatements.java"), corpus("WarmupDeclarations.java"));
+        encoded = codecEncode();
+        serialized = treeSerializerWrite();
+        System.out.println("\nJava8LstCodec: " + encoded.length + " bytes, TreeSerializer: " +
+                serialized.stream().mapToInt(b -> b.length).sum() + " bytes");
+    }
+
+    @Benchmark
+    public byte[] codecEncode() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Java8LstCodec.Encoder encoder = new Java8LstCodec.Encoder(out);
+        for (J.CompilationUnit cu : cus) {
+            encoder.write(cu);
+        }
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> codecDecode() throws IOException {
+        Java8LstCodec.Decoder decoder = new Java8LstCodec.Decoder(new ByteArrayInputStream(encoded));
+        List<J.CompilationUnit> decoded = new ArrayList<>(cus.size());
+        for (int i = 0; i < cus.size(); i++) {
+            decoded.add(decoder.read());
+        }
+        return decoded;
+    }
+
+    @Benchmark
+    public List<byte[]> treeSerializerWrite() {
+        List<byte[]> written = new ArrayList<>(cus.size());
+        for (J.CompilationUnit cu : cus) {
+            written.add(serializer.write(cu));
+        }
+        return written;
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> treeSerializerRead() {
+        List<J.CompilationUnit> read = new ArrayList<>(serialized.size());
+        for (byte[] bytes : serialized) {
+            read.add(serializer.read(bytes));
+        }
+        return read;
+    }
+
+    private static String corpus(String name) {
+        return StringUtils.readFully(Java8Parser.class.getResourceAsStream("warmup/" + name));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(Java8LstCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
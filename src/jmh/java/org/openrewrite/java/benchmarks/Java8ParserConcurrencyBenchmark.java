@@ -0,0 +1,292 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.IterationType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Parser;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.Java8Parser;
+import org.openrewrite.java.tree.J;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses the benchmark corpus on several threads at once, each with a parser of its own, to find how far parsing
+ * scales within one JVM. Every trial prints where its worker threads spent their time, attributing time spent
+ * blocked on a monitor or parked on a lock to the lock and the parser code that took it. Run {@link #main} for a
+ * table of the efficiency of each thread count relative to one thread.
+ *
+ * @see BenchmarkCorpus
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class Java8ParserConcurrencyBenchmark {
+    @Param({"1", "2", "4", "8"})
+    int threads;
+
+    BenchmarkCorpus corpus;
+    List<Parser.Input> inputs;
+    List<Java8Parser> parsers;
+    ExecutorService executor;
+    Contention contention;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Parsed {
+        public long files;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            files = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        corpus = BenchmarkCorpus.load();
+        inputs = corpus.inputs();
+        parsers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            parsers.add(Java8Parser.builder().build());
+        }
+
+        AtomicInteger workers = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread worker = new Thread(runnable, "parser-" + workers.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        });
+        contention = new Contention();
+    }
+
+    @Setup(Level.Iteration)
+    public void startSampling(IterationParams iteration) {
+        if (iteration.getType() == IterationType.MEASUREMENT) {
+            contention.start();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopSampling() throws InterruptedException {
+        contention.stop();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        System.out.println("\n" + threads + " threads on " + Runtime.getRuntime().availableProcessors() +
+                " processors: " + contention);
+    }
+
+    @Benchmark
+    public void parse(Parsed parsed, Blackhole blackhole) throws InterruptedException, ExecutionException {
+        List<Future<List<J.CompilationUnit>>> parses = new ArrayList<>(threads);
+        for (Java8Parser parser : parsers) {
+            parses.add(executor.submit(() -> {
+                contention.worker(Thread.currentThread());
+                List<J.CompilationUnit> cus = parser.parseInputs(inputs, null, new InMemoryExecutionContext());
+                parser.reset();
+                return cus;
+            }));
+        }
+        for (Future<List<J.CompilationUnit>> parse : parses) {
+            blackhole.consume(parse.get());
+        }
+        parsed.files += (long) threads * corpus.files();
+    }
+
+    /**
+     * Samples the states of the worker threads while an iteration is measured. Workers that are blocked on a
+     * monitor or parked on a lock are attributed to the class of the lock, the frame that waits on it and the
+     * nearest parser frame. Workers parked in the executor waiting for work are idle, not contended.
+     */
+    static class Contention implements Runnable {
+        private static final long SAMPLE_INTERVAL_MILLIS = 5;
+
+        private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        private final Set<Long> workers = ConcurrentHashMap.newKeySet();
+
+        private final Map<String, Long> contendedAt = new HashMap<>();
+        private long running;
+        private long contended;
+        private long idle;
+
+        private long gcMillis;
+        private long wallMillis;
+        private long iterationStartMillis;
+        private long iterationStartGcMillis;
+
+        @Nullable
+        private volatile Thread sampler;
+
+        void worker(Thread worker) {
+            workers.add(worker.getId());
+        }
+
+        void start() {
+            if (threadBean.isThreadContentionMonitoringSupported()) {
+                threadBean.setThreadContentionMonitoringEnabled(true);
+            }
+            iterationStartMillis = System.currentTimeMillis();
+            iterationStartGcMillis = gcMillis();
+            Thread sampler = new Thread(this, "parser-contention-sampler");
+            sampler.setDaemon(true);
+            this.sampler = sampler;
+            sampler.start();
+        }
+
+        void stop() throws InterruptedException {
+            Thread sampler = this.sampler;
+            if (sampler == null) {
+                return;
+            }
+            this.sampler = null;
+            sampler.join();
+            wallMillis += System.currentTimeMillis() - iterationStartMillis;
+            gcMillis += gcMillis() - iterationStartGcMillis;
+        }
+
+        @Override
+        public void run() {
+            while (sampler == Thread.currentThread()) {
+                long[] ids = workers.stream().mapToLong(Long::longValue).toArray();
+                for (ThreadInfo info : threadBean.getThreadInfo(ids, 64)) {
+                    if (info != null) {
+                        sample(info);
+                    }
+                }
+                try {
+                    Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void sample(ThreadInfo info) {
+            StackTraceElement[] stack = info.getStackTrace();
+            switch (info.getThreadState()) {
+                case RUNNABLE:
+                    running++;
+                    return;
+                case BLOCKED:
+                case WAITING:
+                case TIMED_WAITING:
+                    for (StackTraceElement frame : stack) {
+                        if (frame.getClassName().equals(ThreadPoolExecutor.class.getName()) &&
+                                frame.getMethodName().equals("getTask")) {
+                            idle++;
+                            return;
+                        }
+                    }
+                    contended++;
+                    contendedAt.merge(site(info), 1L, Long::sum);
+                    return;
+                default:
+                    idle++;
+            }
+        }
+
+        private static String site(ThreadInfo info) {
+            // lock names are the class of the lock and its identity hash code
+            String lock = info.getLockName() == null ? "unknown lock" : info.getLockName().split("@")[0];
+            StackTraceElement[] stack = info.getStackTrace();
+            StringBuilder site = new StringBuilder()
+                    .append(info.getThreadState() == Thread.State.BLOCKED ? "blocked on " : "parked on ")
+                    .append(lock);
+            if (stack.length > 0) {
+                site.append(" in ").append(stack[0].getClassName()).append('.').append(stack[0].getMethodName());
+            }
+            for (StackTraceElement frame : stack) {
+                if (frame.getClassName().startsWith("org.openrewrite.")) {
+                    site.append(" from ").append(frame.getClassName()).append('.').append(frame.getMethodName());
+                    break;
+                }
+            }
+            return site.toString();
+        }
+
+        private static long gcMillis() {
+            long millis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                millis += Math.max(0, gc.getCollectionTime());
+            }
+            return millis;
+        }
+
+        @Override
+        public String toString() {
+            long samples = running + contended + idle;
+            if (samples == 0) {
+                return "no samples";
+            }
+
+            StringBuilder report = new StringBuilder(String.format(
+                    "workers were %.1f%% running, %.1f%% contended, %.1f%% idle; GC took %.1f%% of wall time",
+                    100.0 * running / samples, 100.0 * contended / samples, 100.0 * idle / samples,
+                    wallMillis == 0 ? 0 : 100.0 * gcMillis / wallMillis));
+            contendedAt.entrySet().stream()
+                    .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                    .limit(10)
+                    .forEach(site -> report.append(String.format("%n  %5.1f%% %s",
+                            100.0 * site.getValue() / samples, site.getKey())));
+            return report.toString();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(Java8ParserConcurrencyBenchmark.class.getSimpleName())
+                .build();
+
+        SortedMap<Integer, Double> filesPerSecond = new TreeMap<>();
+        for (RunResult run : new Runner(opt).run()) {
+            Result files = run.getSecondaryResults().get("files");
+            if (files != null) {
+                filesPerSecond.put(Integer.parseInt(run.getParams().getParam("threads")), files.getScore());
+            }
+        }
+
+        if (filesPerSecond.isEmpty()) {
+            return;
+        }
+        int leastThreads = filesPerSecond.firstKey();
+        double perThread = filesPerSecond.get(leastThreads) / leastThreads;
+        System.out.printf("%n%8s %12s %8s %11s%n", "Threads", "Files/s", "Speedup", "Efficiency");
+        filesPerSecond.forEach((threads, rate) -> System.out.printf("%8d %12.1f %7.2fx %10.1f%%%n",
+                threads, rate, rate / perThread, 100.0 * rate / (perThread * threads)));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.Java8Parser;
+import org.openrewrite.java.tree.J;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses expressions with thousands of operators nested on the left, as found in generated SQL and message
+ * strings, and long fluent method chains. javac itself recurses once per operator when attributing these, hence
+ * the large thread stack.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xss256m")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class Java8ParserDeepExpressionBenchmark {
+    @Param({"1000", "10000"})
+    int operands;
+
+    Java8Parser parser;
+    String concatenation;
+    String arithmetic;
+    String methodChain;
+
+    @Setup
+    public void setup() {
+        parser = Java8Parser.builder().build();
+
+        StringBuilder concat = new StringBuilder("class Concatenation {\n    int i0, i1, i2, i3, i4, i5, i6, i7, i8, i9;\n    String s = \"select\"");
+        StringBuilder sum = new StringBuilder("class Arithmetic {\n    int n(int i) {\n        return i");
+        StringBuilder chain = new StringBuilder("class Chain {\n    String s = new StringBuilder()");
+        for (int i = 0; i < operands; i++) {
+            concat.append(i % 2 == 0 ? "\n        + \" column" + i + ",\"" : " + i" + i % 10);
+            sum.append(i % 3 == 0 ? " * " : " + ").append(i).append(i % 7 == 0 ? " /* seven */" : "");
+            chain.append("\n        .append(").append(i).append(')');
+        }
+        concatenation = concat.append(";\n}\n").toString();
+        arithmetic = sum.append(";\n    }\n}\n").toString();
+        methodChain = chain.append("\n        .toString();\n}\n").toString();
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> concatenation() {
+        return parse(concatenation);
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> arithmetic() {
+        return parse(arithmetic);
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> methodChain() {
+        return parse(methodChain);
+    }
+
+    private List<J.CompilationUnit> parse(String source) {
+        List<J.CompilationUnit> cus = parser.parse(new InMemoryExecutionContext(Throwable::printStackTrace), source);
+        parser.reset();
+        return cus;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(Java8ParserDeepExpressionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
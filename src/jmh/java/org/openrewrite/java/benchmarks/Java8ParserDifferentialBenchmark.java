@@ -0,0 +1,214 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.benchmarks;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.IterationType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Parser;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.Java8Parser;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the benchmark corpus with this parser and with the Java 11 parser, so that a difference in performance
+ * between the two can be traced to a phase. Each parser needs the JDK it was written for, so {@link #main} runs
+ * each in a JVM of its own, from the JDKs named by the {@code java8.home} and {@code java11.home} system
+ * properties, and compares their parse time and allocation. Each trial prints the time spent in each phase of
+ * parsing, from the parser's own "rewrite.parse" timers, and the retained size of the compilation units.
+ *
+ * @see BenchmarkCorpus
+ * @see LstFootprint
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class Java8ParserDifferentialBenchmark {
+    private static final String JAVA_11_PARSER = "org.openrewrite.java.Java11Parser";
+
+    @Param({"java8", "java11"})
+    String parser;
+
+    List<Parser.Input> inputs;
+    JavaParser javaParser;
+
+    SimpleMeterRegistry meters;
+    boolean measuring;
+    Map<String, Long> phaseNanosAtStart = new HashMap<>();
+    Map<String, Long> phaseNanos = new TreeMap<>();
+    long parses;
+
+    @Setup
+    public void setup() throws Exception {
+        inputs = BenchmarkCorpus.load().inputs();
+
+        String version = System.getProperty("java.specification.version");
+        if ("java8".equals(parser)) {
+            if (!"1.8".equals(version)) {
+                throw new IllegalStateException("Java8Parser must be benchmarked on Java 8, not " + version);
+            }
+            javaParser = Java8Parser.builder().build();
+        } else {
+            if ("1.8".equals(version)) {
+                throw new IllegalStateException("Java11Parser must be benchmarked on Java 11, not " + version);
+            }
+            javaParser = ((JavaParser.Builder<?, ?>) Class.forName(JAVA_11_PARSER).getMethod("builder")
+                    .invoke(null)).build();
+        }
+
+        meters = new SimpleMeterRegistry();
+        Metrics.addRegistry(meters);
+    }
+
+    @Setup(Level.Iteration)
+    public void startPhases(IterationParams iteration) {
+        measuring = iteration.getType() == IterationType.MEASUREMENT;
+        phaseNanosAtStart = phaseNanos();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopPhases() {
+        if (measuring) {
+            phaseNanos().forEach((phase, nanos) ->
+                    phaseNanos.merge(phase, nanos - phaseNanosAtStart.getOrDefault(phase, 0L), Long::sum));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        Metrics.removeRegistry(meters);
+
+        System.out.println("\n" + parser + " on " + System.getProperty("java.version") + ":");
+        long total = phaseNanos.values().stream().mapToLong(Long::longValue).sum();
+        phaseNanos.forEach((phase, nanos) -> System.out.printf("  %-28s %10.3f ms/op %6.1f%%%n", phase,
+                nanos / 1e6 / Math.max(1, parses), total == 0 ? 0 : 100.0 * nanos / total));
+
+        List<J.CompilationUnit> cus = javaParser.parseInputs(inputs, null, new InMemoryExecutionContext());
+        javaParser.reset();
+        LstFootprint footprint = LstFootprint.measure(cus);
+        System.out.printf("  retained %d bytes: %d tree, %d space, %d markers, %d types%n", footprint.totalBytes(),
+                footprint.bytes(LstFootprint.Part.TREE), footprint.bytes(LstFootprint.Part.SPACE),
+                footprint.bytes(LstFootprint.Part.MARKERS), footprint.bytes(LstFootprint.Part.TYPES));
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> parseInputs() {
+        List<J.CompilationUnit> cus = javaParser.parseInputs(inputs, null, new InMemoryExecutionContext());
+        javaParser.reset();
+        if (measuring) {
+            parses++;
+        }
+        return cus;
+    }
+
+    /**
+     * Total nanoseconds recorded by each successful step of the "rewrite.parse" timers, which both parsers tag
+     * the same way.
+     */
+    private Map<String, Long> phaseNanos() {
+        Map<String, Long> phases = new HashMap<>();
+        for (Timer timer : meters.find("rewrite.parse").tag("outcome", "success").timers()) {
+            String step = timer.getId().getTag("step");
+            if (step != null) {
+                phases.merge(step, (long) timer.totalTime(TimeUnit.NANOSECONDS), Long::sum);
+            }
+        }
+        return phases;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Map<String, RunResult> results = new LinkedHashMap<>();
+        run("java8", System.getProperty("java8.home", System.getProperty("java.home")), results);
+
+        String java11Home = System.getProperty("java11.home");
+        if (java11Home == null) {
+            System.out.println("Set -Djava11.home to compare with the Java 11 parser");
+            return;
+        }
+        run("java11", java11Home, results,
+                // the Java 11 parser uses javac internals that its module doesn't export
+                "--add-exports", "jdk.compiler/com.sun.tools.javac.api=ALL-UNNAMED",
+                "--add-exports", "jdk.compiler/com.sun.tools.javac.code=ALL-UNNAMED",
+                "--add-exports", "jdk.compiler/com.sun.tools.javac.comp=ALL-UNNAMED",
+                "--add-exports", "jdk.compiler/com.sun.tools.javac.file=ALL-UNNAMED",
+                "--add-exports", "jdk.compiler/com.sun.tools.javac.main=ALL-UNNAMED",
+                "--add-exports", "jdk.compiler/com.sun.tools.javac.model=ALL-UNNAMED",
+                "--add-exports", "jdk.compiler/com.sun.tools.javac.parser=ALL-UNNAMED",
+                "--add-exports", "jdk.compiler/com.sun.tools.javac.tree=ALL-UNNAMED",
+                "--add-exports", "jdk.compiler/com.sun.tools.javac.util=ALL-UNNAMED");
+
+        RunResult java8 = results.get("java8");
+        RunResult java11 = results.get("java11");
+        if (java8 == null || java11 == null) {
+            return;
+        }
+        System.out.printf("%n%-24s %14s %14s %9s%n", "", "Java8Parser", "Java11Parser", "Java 8 vs 11");
+        compare("Parse time (ms/op)", java8.getPrimaryResult(), java11.getPrimaryResult());
+        compare("Allocation (B/op)", allocation(java8), allocation(java11));
+    }
+
+    private static void run(String parser, String javaHome, Map<String, RunResult> results, String... jvmArgs)
+            throws RunnerException {
+        ChainedOptionsBuilder opt = new OptionsBuilder()
+                .include(Java8ParserDifferentialBenchmark.class.getSimpleName())
+                .param("parser", parser)
+                .jvm(Paths.get(javaHome, "bin", "java").toString())
+                .addProfiler(GCProfiler.class);
+        if (jvmArgs.length > 0) {
+            opt.jvmArgsAppend(jvmArgs);
+        }
+        for (RunResult result : new Runner(opt.build()).run()) {
+            results.put(parser, result);
+        }
+    }
+
+    @Nullable
+    private static Result allocation(RunResult run) {
+        for (Map.Entry<String, Result> secondary : run.getSecondaryResults().entrySet()) {
+            if (secondary.getKey().endsWith("gc.alloc.rate.norm")) {
+                return secondary.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static void compare(String measure, @Nullable Result java8, @Nullable Result java11) {
+        if (java8 == null || java11 == null) {
+            return;
+        }
+        System.out.printf("%-24s %14.3f %14.3f %+8.1f%%%n", measure, java8.getScore(), java11.getScore(),
+                100.0 * (java8.getScore() - java11.getScore()) / java11.getScore());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Parser;
+import org.openrewrite.java.Java8Parser;
+import org.openrewrite.java.tree.J;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The retained size of the compilation units parsed from the benchmark corpus, split into tree nodes, whitespace
+ * and comments, markers, and types. Reported as secondary results per compilation unit, per KB of source and per
+ * line; the primary score is just the time to parse and measure.
+ *
+ * @see LstFootprint
+ * @see BenchmarkCorpus
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@State(Scope.Benchmark)
+public class Java8ParserFootprintBenchmark {
+    BenchmarkCorpus corpus;
+    List<Parser.Input> inputs;
+    long lines;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long treeBytesPerCompilationUnit;
+        public long spaceBytesPerCompilationUnit;
+        public long markerBytesPerCompilationUnit;
+        public long typeBytesPerCompilationUnit;
+        public long bytesPerSourceKb;
+        public long bytesPerLine;
+    }
+
+    @Setup
+    public void setup() {
+        corpus = BenchmarkCorpus.load();
+        inputs = corpus.inputs();
+        for (int i = 0; i < corpus.files(); i++) {
+            lines += corpus.source(i).chars().filter(c -> c == '\n').count() + 1;
+        }
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> retainedSize(Footprint footprint) {
+        List<J.CompilationUnit> cus = Java8Parser.builder().build()
+                .parseInputs(inputs, null, new InMemoryExecutionContext());
+
+        LstFootprint measured = LstFootprint.measure(cus);
+        int n = Math.max(1, cus.size());
+        footprint.treeBytesPerCompilationUnit = measured.bytes(LstFootprint.Part.TREE) / n;
+        footprint.spaceBytesPerCompilationUnit = measured.bytes(LstFootprint.Part.SPACE) / n;
+        footprint.markerBytesPerCompilationUnit = measured.bytes(LstFootprint.Part.MARKERS) / n;
+        footprint.typeBytesPerCompilationUnit = measured.bytes(LstFootprint.Part.TYPES) / n;
+        footprint.bytesPerSourceKb = measured.totalBytes() * 1024 / Math.max(1, corpus.bytes());
+        footprint.bytesPerLine = measured.totalBytes() / Math.max(1, lines);
+        return cus;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(Java8ParserFootprintBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
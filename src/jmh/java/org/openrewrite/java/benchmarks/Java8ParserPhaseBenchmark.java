@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.benchmarks;
+
+import com.sun.tools.javac.tree.JCTree;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrewrite.java.tree.J;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The three phases of parsing, each measured on its own over the benchmark corpus: JDK parsing, type attribution,
+ * and mapping to Rewrite's AST. The last runs {@code ReloadableJava8ParserVisitor} in isolation over trees that were
+ * parsed and attributed once, since mapping leaves them unchanged.
+ *
+ * @see BenchmarkCorpus
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class Java8ParserPhaseBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Corpus {
+        BenchmarkCorpus corpus;
+
+        @Setup
+        public void setup() {
+            corpus = BenchmarkCorpus.load();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Unparsed {
+        JavacPhases phases;
+
+        @Setup(Level.Invocation)
+        public void setup(Corpus corpus) {
+            phases = new JavacPhases(corpus.corpus.inputs());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Parsed {
+        JavacPhases phases;
+
+        @Setup(Level.Invocation)
+        public void setup(Corpus corpus) {
+            phases = new JavacPhases(corpus.corpus.inputs());
+            phases.parse();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Attributed {
+        JavacPhases phases;
+
+        @Setup(Level.Trial)
+        public void setup(Corpus corpus) {
+            phases = new JavacPhases(corpus.corpus.inputs());
+            phases.parse();
+            phases.attribute();
+        }
+    }
+
+    @Benchmark
+    public List<JCTree.JCCompilationUnit> jdkParsing(Unparsed unparsed) {
+        return unparsed.phases.parse();
+    }
+
+    @Benchmark
+    public JavacPhases typeAttribution(Parsed parsed) {
+        parsed.phases.attribute();
+        return parsed.phases;
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> mapToRewriteAst(Attributed attributed) {
+        return attributed.phases.map();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(Java8ParserPhaseBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Parser;
+import org.openrewrite.java.Java8Parser;
+import org.openrewrite.java.tree.J;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grows one dimension of a {@link SyntheticCorpus} at a time, leaving the others at their defaults. Parse time
+ * should grow in proportion to the corpus size printed for each trial; anything faster points at super-linear
+ * behavior along that dimension.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class Java8ParserScalingBenchmark {
+    @Param({"fileCount", "classSize", "annotationDensity", "genericsDepth", "lambdaDensity", "commentDensity",
+            "literalArrayLength", "crossFileReferences"})
+    String dimension;
+
+    @Param({"1", "2", "4", "8"})
+    int scale;
+
+    Java8Parser parser;
+    List<Parser.Input> inputs;
+
+    @Setup
+    public void setup() {
+        SyntheticCorpus generator = new SyntheticCorpus();
+        switch (dimension) {
+            case "fileCount":
+                generator.fileCount(10 * scale);
+                break;
+            case "classSize":
+                generator.classSize(20 * scale);
+                break;
+            case "annotationDensity":
+                generator.annotationDensity(0.125 * scale);
+                break;
+            case "genericsDepth":
+                generator.genericsDepth(scale);
+                break;
+            case "lambdaDensity":
+                generator.lambdaDensity(0.125 * scale);
+                break;
+            case "commentDensity":
+                generator.commentDensity(0.125 * scale);
+                break;
+            case "literalArrayLength":
+                generator.literalArrayLength(250 * scale);
+                break;
+            case "crossFileReferences":
+                generator.crossFileReferences(scale);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown dimension " + dimension);
+        }
+
+        BenchmarkCorpus corpus = generator.generate();
+        inputs = corpus.inputs();
+        parser = Java8Parser.builder().build();
+        System.out.println("\n" + dimension + " x" + scale + ": " + corpus.files() + " files, " +
+                corpus.bytes() + " bytes");
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> parse() {
+        List<J.CompilationUnit> cus = parser.parseInputs(inputs, null, new InMemoryExecutionContext());
+        parser.reset();
+        return cus;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(Java8ParserScalingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Parser;
+import org.openrewrite.java.Java8Parser;
+import org.openrewrite.java.tree.J;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building parsers in a warm JVM, and parsing the benchmark corpus end to end. Files and bytes parsed are reported
+ * as rates alongside the operations.
+ *
+ * @see BenchmarkCorpus
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class Java8ParserThroughputBenchmark {
+    BenchmarkCorpus corpus;
+    List<Parser.Input> inputs;
+    Java8Parser parser;
+    Java8Parser prototype;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Parsed {
+        public long files;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            files = 0;
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        corpus = BenchmarkCorpus.load();
+        inputs = corpus.inputs();
+        parser = Java8Parser.builder().build();
+        prototype = Java8Parser.builder().build();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Java8Parser build() {
+        return Java8Parser.builder().build();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Java8Parser fork() {
+        return prototype.fork();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public List<J.CompilationUnit> parseInputs(Parsed parsed) {
+        List<J.CompilationUnit> cus = parser.parseInputs(inputs, null, new InMemoryExecutionContext());
+        parser.reset();
+        parsed.files += corpus.files();
+        parsed.bytes += corpus.bytes();
+        return cus;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(Java8ParserThroughputBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.benchmarks;
+
+import com.sun.tools.javac.comp.Enter;
+import com.sun.tools.javac.file.JavacFileManager;
+import com.sun.tools.javac.main.JavaCompiler;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Options;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Parser;
+import org.openrewrite.internal.StringUtils;
+import org.openrewrite.java.Java8ParserInputFileObject;
+import org.openrewrite.java.ReloadableJava8ParserVisitor;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.Space;
+
+import javax.tools.JavaFileManager;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Drives javac through the same phases, with the same options, as {@code ReloadableJava8Parser} does, so that each
+ * phase can be measured on its own. Requires {@code tools.jar} on the classpath, which the jmh source set has.
+ */
+class JavacPhases {
+    private final JavaCompiler compiler;
+    private final List<Parser.Input> inputs;
+    private final List<JCTree.JCCompilationUnit> parsed = new ArrayList<>();
+    private final Context context = new Context();
+
+    JavacPhases(List<Parser.Input> inputs) {
+        this.inputs = inputs;
+
+        Log log = Log.instance(context);
+        PrintWriter silent = new PrintWriter(new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        log.setWriters(silent);
+
+        context.put(JavaFileManager.class, new JavacFileManager(context, true, StandardCharsets.UTF_8));
+        Options.instance(context).put("allowStringFolding", "false");
+        Options.instance(context).put("compilePolicy", "attr");
+        Options.instance(context).put("-implicit", "none");
+        Options.instance(context).put("-g", "-g");
+        Options.instance(context).put("-proc", "none");
+
+        compiler = new JavaCompiler(context);
+        compiler.genEndPos = true;
+        compiler.keepComments = false;
+        compiler.lineDebugInfo = false;
+    }
+
+    /**
+     * (1) JDK parsing
+     */
+    List<JCTree.JCCompilationUnit> parse() {
+        for (Parser.Input input : inputs) {
+            parsed.add(compiler.parse(new Java8ParserInputFileObject(input)));
+        }
+        return parsed;
+    }
+
+    /**
+     * (2) Type attribution, including entering symbols.
+     */
+    void attribute() {
+        Enter.instance(context).main(com.sun.tools.javac.util.List.from(parsed));
+        compiler.attribute(compiler.todo);
+    }
+
+    /**
+     * (3) Map to Rewrite AST. Doesn't change the javac trees, so may be repeated.
+     */
+    List<J.CompilationUnit> map() {
+        Map<String, JavaType.Class> sharedClassTypes = new HashMap<>();
+        List<J.CompilationUnit> cus = new ArrayList<>(parsed.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            Parser.Input input = inputs.get(i);
+            ReloadableJava8ParserVisitor visitor = new ReloadableJava8ParserVisitor(input.getPath(),
+                    StringUtils.readFully(input.getSource()), false, emptyList(), sharedClassTypes,
+                    new InMemoryExecutionContext());
+            cus.add((J.CompilationUnit) visitor.scan(parsed.get(i), Space.EMPTY));
+        }
+        return cus;
+    }
+}
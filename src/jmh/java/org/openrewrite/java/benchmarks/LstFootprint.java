@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.benchmarks;
+
+import org.openjdk.jol.vm.VM;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.Space;
+import org.openrewrite.marker.Marker;
+import org.openrewrite.marker.Markers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Walks everything reachable from a batch of compilation units and adds up the shallow size of each object, as
+ * laid out by the running JVM, into one of four parts: tree nodes (and the lists, padding and identifiers that hold
+ * them together), {@link Space}, {@link Markers}, and {@link JavaType}. An object counts toward the part of the
+ * nearest enclosing tree, space, markers or type it was first reached from. Types are typically shared between
+ * units, so footprint is only meaningful per batch.
+ * <p>
+ * Shallow sizes come from JOL, which accounts for compressed references, headers and alignment of the running JVM.
+ */
+class LstFootprint {
+    private static final VM vm = VM.current();
+
+    enum Part {
+        TREE, SPACE, MARKERS, TYPES
+    }
+
+    private static final ClassValue<Layout> layouts = new ClassValue<Layout>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+            return new Layout(type);
+        }
+    };
+
+    private final long[] bytes = new long[Part.values().length];
+    private final long[] objects = new long[Part.values().length];
+
+    static LstFootprint measure(List<J.CompilationUnit> cus) {
+        LstFootprint footprint = new LstFootprint();
+        footprint.walk(cus);
+        return footprint;
+    }
+
+    long bytes(Part part) {
+        return bytes[part.ordinal()];
+    }
+
+    long objects(Part part) {
+        return objects[part.ordinal()];
+    }
+
+    long totalBytes() {
+        return Arrays.stream(bytes).sum();
+    }
+
+    private void walk(List<J.CompilationUnit> cus) {
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Object> pending = new ArrayDeque<>();
+        Deque<Part> pendingParts = new ArrayDeque<>();
+        for (J.CompilationUnit cu : cus) {
+            pending.push(cu);
+            pendingParts.push(Part.TREE);
+        }
+
+        while (!pending.isEmpty()) {
+            Object o = pending.pop();
+            Part part = partOf(o, pendingParts.pop());
+            if (!visited.add(o)) {
+                continue;
+            }
+
+            Class<?> c = o.getClass();
+            bytes[part.ordinal()] += vm.sizeOf(o);
+            if (c.isArray()) {
+                if (!c.getComponentType().isPrimitive()) {
+                    for (Object element : (Object[]) o) {
+                        if (element != null) {
+                            pending.push(element);
+                            pendingParts.push(part);
+                        }
+                    }
+                }
+            } else {
+                for (Field field : layouts.get(c).references) {
+                    Object value = get(field, o);
+                    if (value != null && !isShared(value)) {
+                        pending.push(value);
+                        pendingParts.push(part);
+                    }
+                }
+            }
+            objects[part.ordinal()]++;
+        }
+    }
+
+    private static Part partOf(Object o, Part enclosing) {
+        if (o instanceof JavaType) {
+            return Part.TYPES;
+        } else if (o instanceof Space) {
+            return Part.SPACE;
+        } else if (o instanceof Markers || o instanceof Marker) {
+            return Part.MARKERS;
+        } else if (o instanceof J) {
+            return Part.TREE;
+        }
+        return enclosing;
+    }
+
+    /**
+     * JVM and class loading state that happens to be reachable, but isn't retained by the trees.
+     */
+    private static boolean isShared(Object o) {
+        return o instanceof Class || o instanceof ClassLoader || o instanceof Thread;
+    }
+
+    private static Object get(Field field, Object o) {
+        try {
+            return field.get(o);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Layout {
+        final Field[] references;
+
+        Layout(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            references = fields.toArray(new Field[0]);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates Java 8 compilation units whose size and shape are controlled, so benchmarks can show how parsing scales
+ * along each dimension independently. The same parameters and seed always generate the same sources, and every
+ * generated corpus compiles.
+ * <p>
+ * Run {@link #main(String[])} to write a corpus to disk, for example to parse it with
+ * {@code -Drewrite.benchmark.corpus=<dir>} or from a test.
+ */
+public class SyntheticCorpus {
+    private int fileCount = 10;
+    private int classSize = 20;
+    private double annotationDensity = 0.2;
+    private int genericsDepth = 2;
+    private double lambdaDensity = 0.2;
+    private double commentDensity = 0.2;
+    private int literalArrayLength = 0;
+    private int crossFileReferences = 1;
+    private long seed = 0;
+
+    /**
+     * @param fileCount The number of compilation units, each declaring one class.
+     */
+    public SyntheticCorpus fileCount(int fileCount) {
+        this.fileCount = fileCount;
+        return this;
+    }
+
+    /**
+     * @param classSize The number of members (fields and methods) in each class.
+     */
+    public SyntheticCorpus classSize(int classSize) {
+        this.classSize = classSize;
+        return this;
+    }
+
+    /**
+     * @param annotationDensity The probability that a member is annotated.
+     */
+    public SyntheticCorpus annotationDensity(double annotationDensity) {
+        this.annotationDensity = annotationDensity;
+        return this;
+    }
+
+    /**
+     * @param genericsDepth How deeply type arguments are nested in generic field types, at least 1.
+     */
+    public SyntheticCorpus genericsDepth(int genericsDepth) {
+        this.genericsDepth = genericsDepth;
+        return this;
+    }
+
+    /**
+     * @param lambdaDensity The probability that a method body declares and applies a lambda.
+     */
+    public SyntheticCorpus lambdaDensity(double lambdaDensity) {
+        this.lambdaDensity = lambdaDensity;
+        return this;
+    }
+
+    /**
+     * @param commentDensity The probability that a member is preceded by a comment.
+     */
+    public SyntheticCorpus commentDensity(double commentDensity) {
+        this.commentDensity = commentDensity;
+        return this;
+    }
+
+    /**
+     * @param literalArrayLength The number of elements in a literal array field in each class, or 0 for none.
+     */
+    public SyntheticCorpus literalArrayLength(int literalArrayLength) {
+        this.literalArrayLength = literalArrayLength;
+        return this;
+    }
+
+    /**
+     * @param crossFileReferences The number of calls each method makes to classes in other files.
+     */
+    public SyntheticCorpus crossFileReferences(int crossFileReferences) {
+        this.crossFileReferences = crossFileReferences;
+        return this;
+    }
+
+    public SyntheticCorpus seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public BenchmarkCorpus generate() {
+        Random random = new Random(seed);
+        List<Path> paths = new ArrayList<>(fileCount);
+        List<String> sources = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            paths.add(Paths.get(packageName(i).replace('.', '/'), className(i) + ".java"));
+            sources.add(compilationUnit(i, random));
+        }
+        return BenchmarkCorpus.of(paths, sources);
+    }
+
+    private static String packageName(int file) {
+        return "synthetic.p" + file % 10;
+    }
+
+    private static String className(int file) {
+        return "C" + file;
+    }
+
+    private String compilationUnit(int file, Random random) {
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(packageName(file)).append(";\n\n");
+        source.append("import java.util.*;\n");
+        source.append("import java.util.function.*;\n\n");
+        comment(source, random, "");
+        source.append("public class ").append(className(file)).append(" {\n");
+
+        // every class has this, so other files can refer to it
+        source.append("    public int m0(int x) {\n        return x + ").append(file).append(";\n    }\n");
+
+        if (literalArrayLength > 0) {
+            source.append("\n    static final int[] DATA = {");
+            for (int i = 0; i < literalArrayLength; i++) {
+                source.append(i % 16 == 0 ? "\n        " : " ").append(random.nextInt(1000)).append(',');
+            }
+            source.append("\n    };\n");
+        }
+
+        for (int member = 1; member < classSize; member++) {
+            source.append('\n');
+            comment(source, random, "    ");
+            annotation(source, random, member % 2 == 0);
+            if (member % 2 == 0) {
+                field(source, member);
+            } else {
+                method(source, file, member, random);
+            }
+        }
+
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private void comment(StringBuilder source, Random random, String indent) {
+        if (random.nextDouble() >= commentDensity) {
+            return;
+        }
+        switch (random.nextInt(3)) {
+            case 0:
+                source.append(indent).append("// a line comment\n");
+                break;
+            case 1:
+                source.append(indent).append("/* a block\n").append(indent).append("   comment */\n");
+                break;
+            default:
+                source.append(indent).append("/**\n").append(indent).append(" * Javadoc with a {@link Object}.\n")
+                        .append(indent).append(" */\n");
+        }
+    }
+
+    private void annotation(StringBuilder source, Random random, boolean field) {
+        if (random.nextDouble() >= annotationDensity) {
+            return;
+        }
+        source.append(field ? "    @Deprecated\n" : "    @SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+    }
+
+    private void field(StringBuilder source, int member) {
+        source.append("    private ").append(genericType(Math.max(1, genericsDepth))).append(" f").append(member)
+                .append(" = new HashMap<>();\n");
+    }
+
+    private static String genericType(int depth) {
+        if (depth <= 0) {
+            return "String";
+        }
+        return depth % 2 == 0 ? "Map<String, " + genericType(depth - 1) + ">" :
+                "Map<Integer, List<" + genericType(depth - 1) + ">>";
+    }
+
+    private void method(StringBuilder source, int file, int member, Random random) {
+        source.append("    public int m").append(member).append("(int x) {\n");
+        source.append("        int r = x;\n");
+        source.append("        for (int i = 0; i < ").append(member).append("; i++) {\n");
+        source.append("            r += i % 3 == 0 ? i : -i;\n");
+        source.append("        }\n");
+        if (random.nextDouble() < lambdaDensity) {
+            source.append("        Function<Integer, Integer> f = y -> {\n");
+            source.append("            BiFunction<Integer, Integer, Integer> g = (a, b) -> a * b + y;\n");
+            source.append("            return g.apply(y, r0());\n");
+            source.append("        };\n");
+            source.append("        r = f.apply(r);\n");
+        }
+        for (int i = 0; i < crossFileReferences && fileCount > 1; i++) {
+            int other = random.nextInt(fileCount - 1);
+            other = other >= file ? other + 1 : other;
+            source.append("        r += new ").append(packageName(other)).append('.').append(className(other))
+                    .append("().m0(r);\n");
+        }
+        source.append("        return r;\n");
+        source.append("    }\n");
+        if (member == 1) {
+            source.append("\n    private static int r0() {\n        return 1;\n    }\n");
+        }
+    }
+
+    /**
+     * Write a corpus generated with the default parameters to a directory.
+     *
+     * @param args The directory, then optionally the file count and class size.
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args[0]);
+        SyntheticCorpus generator = new SyntheticCorpus();
+        if (args.length > 1) {
+            generator.fileCount(Integer.parseInt(args[1]));
+        }
+        if (args.length > 2) {
+            generator.classSize(Integer.parseInt(args[2]));
+        }
+
+        BenchmarkCorpus corpus = generator.generate();
+        for (int i = 0; i < corpus.files(); i++) {
+            Path file = directory.resolve(corpus.path(i));
+            Files.createDirectories(file.getParent());
+            Files.write(file, corpus.source(i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,1045 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.JavaType;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * A compact binary encoding of the compilation units this parser produces, for moving them between processes or
+ * into a cache.
+ * <p>
+ * Objects are encoded field by field from their runtime class, so both ends must have the same version of the tree
+ * classes on their classpath. Only classes of trees, types, markers and styles are encoded this way, and a decoder
+ * refuses to instantiate any other class named in its input. Within a stream, every distinct string and class name
+ * is written once and referred to by index afterwards, and so is every {@link JavaType}, so the type graph shared by
+ * the units of a batch isn't duplicated per unit. Other objects are only deduplicated within the unit that contains
+ * them. Numbers are written as variable length integers. An encoding that is only decoded in the process that wrote
+ * it can leave types out altogether, with a {@link TypeTable}.
+ * <p>
+ * Collections are decoded as the same kind of collection they were encoded from, out of a fixed set of JDK
+ * implementations. Objects held in a {@code static final} field of their own class, like
+ * {@link org.openrewrite.java.tree.Space#EMPTY} and {@link org.openrewrite.marker.Markers#EMPTY}, are decoded as
+ * that same instance, as are enum constants.
+ */
+public final class Java8LstCodec {
+    static final int NULL = 0;
+    static final int STRING = 1;
+    static final int STRING_REF = 2;
+    static final int REF = 3;
+    static final int TYPE_REF = 4;
+    static final int OBJECT = 5;
+    static final int COLLECTION = 6;
+    static final int CONSTANT = 7;
+    static final int SHARED_TYPE = 8;
+    static final int ARRAY = 12;
+    static final int ENUM = 13;
+    static final int TRUE = 14;
+    static final int FALSE = 15;
+    static final int INT = 16;
+    static final int LONG = 17;
+    static final int DOUBLE = 18;
+    static final int FLOAT = 19;
+    static final int SHORT = 20;
+    static final int BYTE = 21;
+    static final int CHAR = 22;
+    static final int UUID = 23;
+    static final int PATH = 24;
+    static final int CHARSET = 25;
+    static final int PATTERN = 26;
+
+    /**
+     * The packages of the only classes that are encoded field by field, and so the only classes a decoder will
+     * instantiate or look up constants in.
+     */
+    private static final List<String> ALLOWED_PACKAGES = Arrays.asList(
+            "org.openrewrite.java.tree.",
+            "org.openrewrite.java.marker.",
+            "org.openrewrite.java.style.",
+            "org.openrewrite.marker.",
+            "org.openrewrite.style."
+    );
+
+    private static final ClassValue<FieldLayout[]> layouts = new ClassValue<FieldLayout[]>() {
+        @Override
+        protected FieldLayout[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                List<Field> declared = new ArrayList<>();
+                for (Field field : c.getDeclaredFields()) {
+                    if ((field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) == 0) {
+                        declared.add(field);
+                    }
+                }
+                // declaration order isn't guaranteed by reflection, so both ends need to agree on one
+                declared.sort(Comparator.comparing(Field::getName));
+                fields.addAll(0, declared);
+            }
+
+            FieldLayout[] layout = new FieldLayout[fields.size()];
+            for (int i = 0; i < layout.length; i++) {
+                layout[i] = new FieldLayout(fields.get(i));
+            }
+            return layout;
+        }
+    };
+
+    /**
+     * Instances held in {@code static final} fields of their own class, by field name.
+     */
+    private static final ClassValue<Map<String, Object>> constants = new ClassValue<Map<String, Object>>() {
+        @Override
+        protected Map<String, Object> computeValue(Class<?> type) {
+            Map<String, Object> constants = new HashMap<>();
+            for (Field field : type.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers) && field.getType().isAssignableFrom(type)) {
+                    try {
+                        field.setAccessible(true);
+                        Object constant = field.get(null);
+                        if (constant != null && constant.getClass() == type) {
+                            constants.put(field.getName(), constant);
+                        }
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+            return constants;
+        }
+    };
+
+    /**
+     * Tree and type classes have no constructor that leaves every field to be set afterwards, so they are
+     * instantiated the way {@link java.io.ObjectInputStream} instantiates classes, without running any constructor
+     * of the class itself. The factory for those constructors is looked up reflectively, since it isn't part of the
+     * public API of the JDK.
+     */
+    private static final ClassValue<Constructor<?>> instantiators = new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> type) {
+            try {
+                Class<?> reflectionFactoryClass = Class.forName("sun.reflect.ReflectionFactory");
+                Object reflectionFactory = reflectionFactoryClass.getMethod("getReflectionFactory").invoke(null);
+                Constructor<?> constructor = (Constructor<?>) reflectionFactoryClass
+                        .getMethod("newConstructorForSerialization", Class.class, Constructor.class)
+                        .invoke(reflectionFactory, type, Object.class.getDeclaredConstructor());
+                constructor.setAccessible(true);
+                return constructor;
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to instantiate " + type.getName() + " without a constructor", e);
+            }
+        }
+    };
+
+    private Java8LstCodec() {
+    }
+
+    static boolean isAllowed(String className) {
+        String name = className;
+        while (name.startsWith("[")) {
+            name = name.substring(1);
+        }
+        if (name.length() == 1) {
+            // the descriptor of a primitive component type
+            return className.startsWith("[");
+        }
+        if (name.startsWith("L") && name.endsWith(";")) {
+            name = name.substring(1, name.length() - 1);
+        }
+        if (name.equals("java.lang.String") || name.equals("java.lang.Object")) {
+            return className.startsWith("[");
+        }
+        for (String pkg : ALLOWED_PACKAGES) {
+            if (name.startsWith(pkg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class FieldLayout {
+        final Field field;
+        final Class<?> type;
+
+        FieldLayout(Field field) {
+            field.setAccessible(true);
+            this.field = field;
+            this.type = field.getType();
+        }
+    }
+
+    /**
+     * The JDK collections that can be encoded, each decoded as the same kind. Unmodifiable views are decoded as a
+     * view of an insertion ordered collection.
+     */
+    private enum CollectionKind {
+        ARRAY_LIST(ArrayList.class),
+        LINKED_LIST(LinkedList.class),
+        ARRAYS_AS_LIST(Arrays.asList().getClass()),
+        UNMODIFIABLE_RANDOM_ACCESS_LIST(Collections.unmodifiableList(new ArrayList<>()).getClass()),
+        UNMODIFIABLE_LIST(Collections.unmodifiableList(new LinkedList<>()).getClass()),
+        SINGLETON_LIST(Collections.singletonList(null).getClass()),
+        EMPTY_LIST(Collections.emptyList().getClass()),
+        HASH_SET(HashSet.class),
+        LINKED_HASH_SET(LinkedHashSet.class),
+        TREE_SET(TreeSet.class),
+        ENUM_SET(EnumSet.class),
+        UNMODIFIABLE_SET(Collections.unmodifiableSet(new HashSet<>()).getClass()),
+        SINGLETON_SET(Collections.singleton(null).getClass()),
+        EMPTY_SET(Collections.emptySet().getClass()),
+        HASH_MAP(HashMap.class),
+        LINKED_HASH_MAP(LinkedHashMap.class),
+        TREE_MAP(TreeMap.class),
+        IDENTITY_HASH_MAP(IdentityHashMap.class),
+        UNMODIFIABLE_MAP(Collections.unmodifiableMap(new HashMap<>()).getClass()),
+        SINGLETON_MAP(Collections.singletonMap(null, null).getClass()),
+        EMPTY_MAP(Collections.emptyMap().getClass());
+
+        private static final Map<Class<?>, CollectionKind> byClass = new HashMap<>();
+
+        static {
+            for (CollectionKind kind : values()) {
+                byClass.put(kind.type, kind);
+            }
+        }
+
+        private final Class<?> type;
+
+        CollectionKind(Class<?> type) {
+            this.type = type;
+        }
+
+        boolean isMap() {
+            return Map.class.isAssignableFrom(type);
+        }
+
+        static CollectionKind of(Object collection) {
+            if (collection instanceof EnumSet) {
+                // the implementation depends on the number of constants
+                return ENUM_SET;
+            }
+            CollectionKind kind = byClass.get(collection.getClass());
+            if (kind == null) {
+                throw new IllegalArgumentException("Unable to encode a collection of type " +
+                        collection.getClass().getName());
+            }
+            if ((kind == TREE_SET && ((TreeSet<?>) collection).comparator() != null) ||
+                (kind == TREE_MAP && ((TreeMap<?, ?>) collection).comparator() != null)) {
+                throw new IllegalArgumentException("Unable to encode a sorted collection with a comparator");
+            }
+            return kind;
+        }
+    }
+
+    /**
+     * Types shared by every encoder and decoder given the same table. A type is written as its index in the table,
+     * and decoded as the very instance that was encoded, so separately decoded roots share their types by identity,
+     * and a type graph is encoded once however many streams refer to it. Only usable within the process that
+     * encoded, and not thread safe.
+     */
+    static final class TypeTable {
+        private final Map<Object, Integer> indexes = new IdentityHashMap<>();
+        private final List<Object> types = new ArrayList<>();
+
+        int indexOf(Object type) {
+            Integer index = indexes.get(type);
+            if (index == null) {
+                index = types.size();
+                indexes.put(type, index);
+                types.add(type);
+            }
+            return index;
+        }
+
+        Object get(int index) throws IOException {
+            if (index >= types.size()) {
+                throw new IOException("Unexpected shared type index " + index + " in encoded tree");
+            }
+            return types.get(index);
+        }
+    }
+
+    /**
+     * Writes one root object at a time to a stream. Calls {@link #flush()} when done, the underlying stream is left
+     * open.
+     */
+    public static final class Encoder {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<Class<?>, Integer> classes = new HashMap<>();
+        private final Map<Object, Integer> types = new IdentityHashMap<>();
+        private final Map<Object, Integer> objects = new IdentityHashMap<>();
+
+        @Nullable
+        private final TypeTable typeTable;
+
+        public Encoder(OutputStream out) {
+            this(out, null);
+        }
+
+        Encoder(OutputStream out, @Nullable TypeTable typeTable) {
+            this.out = out;
+            this.typeTable = typeTable;
+        }
+
+        public void write(Object root) throws IOException {
+            try {
+                writeValue(root);
+            } finally {
+                objects.clear();
+            }
+        }
+
+        public void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+            out.flush();
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                writeByte(NULL);
+                return;
+            }
+
+            if (value instanceof String) {
+                writeString((String) value);
+                return;
+            } else if (value instanceof Boolean) {
+                writeByte((Boolean) value ? TRUE : FALSE);
+                return;
+            } else if (value instanceof Integer) {
+                writeByte(INT);
+                writeVarLong((Integer) value);
+                return;
+            } else if (value instanceof Long) {
+                writeByte(LONG);
+                writeVarLong((Long) value);
+                return;
+            } else if (value instanceof Enum) {
+                Class<?> c = ((Enum<?>) value).getDeclaringClass();
+                if (!isAllowed(c.getName())) {
+                    throw new IllegalArgumentException("Unable to encode a constant of " + c.getName() +
+                            ", which isn't a tree, type, marker or style");
+                }
+                writeByte(ENUM);
+                writeClass(c);
+                writeVarInt(((Enum<?>) value).ordinal());
+                return;
+            } else if (value instanceof java.util.UUID) {
+                writeByte(UUID);
+                writeLong(((java.util.UUID) value).getMostSignificantBits());
+                writeLong(((java.util.UUID) value).getLeastSignificantBits());
+                return;
+            } else if (value instanceof Path) {
+                writeByte(PATH);
+                writeString(value.toString());
+                return;
+            } else if (value instanceof Charset) {
+                writeByte(CHARSET);
+                writeString(((Charset) value).name());
+                return;
+            } else if (value instanceof Pattern) {
+                writeByte(PATTERN);
+                writeString(((Pattern) value).pattern());
+                writeVarInt(((Pattern) value).flags());
+                return;
+            } else if (value instanceof Double) {
+                writeByte(DOUBLE);
+                writeLong(Double.doubleToRawLongBits((Double) value));
+                return;
+            } else if (value instanceof Float) {
+                writeByte(FLOAT);
+                writeVarInt(Float.floatToRawIntBits((Float) value));
+                return;
+            } else if (value instanceof Short) {
+                writeByte(SHORT);
+                writeVarLong((Short) value);
+                return;
+            } else if (value instanceof Byte) {
+                writeByte(BYTE);
+                writeByte((Byte) value);
+                return;
+            } else if (value instanceof Character) {
+                writeByte(CHAR);
+                writeVarInt((Character) value);
+                return;
+            }
+
+            if (typeTable != null && value instanceof JavaType) {
+                writeByte(SHARED_TYPE);
+                writeVarInt(typeTable.indexOf(value));
+                return;
+            }
+            Integer type = types.get(value);
+            if (type != null) {
+                writeByte(TYPE_REF);
+                writeVarInt(type);
+                return;
+            }
+            Integer ref = objects.get(value);
+            if (ref != null) {
+                writeByte(REF);
+                writeVarInt(ref);
+                return;
+            }
+
+            if (value instanceof Collection || value instanceof Map) {
+                writeCollection(value);
+                return;
+            }
+
+            Class<?> c = value.getClass();
+            if (!isAllowed(c.getName()) || c.isSynthetic()) {
+                throw new IllegalArgumentException("Unable to encode an instance of " + c.getName() +
+                        ", which isn't a tree, type, marker or style");
+            }
+
+            if (c.isArray()) {
+                objects.put(value, objects.size());
+                writeByte(ARRAY);
+                writeClass(c);
+                writeArray(value);
+                return;
+            }
+
+            for (Map.Entry<String, Object> constant : constants.get(c).entrySet()) {
+                if (constant.getValue() == value) {
+                    writeByte(CONSTANT);
+                    writeClass(c);
+                    writeString(constant.getKey());
+                    return;
+                }
+            }
+
+            if (value instanceof JavaType) {
+                types.put(value, types.size());
+            } else {
+                objects.put(value, objects.size());
+            }
+            writeByte(OBJECT);
+            writeClass(c);
+            for (FieldLayout field : layouts.get(c)) {
+                writeField(value, field);
+            }
+        }
+
+        private void writeCollection(Object value) throws IOException {
+            CollectionKind kind = CollectionKind.of(value);
+            objects.put(value, objects.size());
+            writeByte(COLLECTION);
+            writeVarInt(kind.ordinal());
+
+            if (kind == CollectionKind.ENUM_SET) {
+                EnumSet<?> enumSet = (EnumSet<?>) value;
+                // an empty set has no element to take the enum type from, but its complement does
+                Enum<?> any = enumSet.isEmpty() ? EnumSet.complementOf(enumSet).iterator().next() :
+                        enumSet.iterator().next();
+                writeClass(any.getDeclaringClass());
+            }
+
+            if (kind.isMap()) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                writeVarInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else {
+                Collection<?> collection = (Collection<?>) value;
+                writeVarInt(collection.size());
+                for (Object element : collection) {
+                    writeValue(element);
+                }
+            }
+        }
+
+        private void writeField(Object o, FieldLayout field) throws IOException {
+            try {
+                Class<?> type = field.type;
+                if (!type.isPrimitive()) {
+                    writeValue(field.field.get(o));
+                } else if (type == int.class) {
+                    writeVarLong(field.field.getInt(o));
+                } else if (type == boolean.class) {
+                    writeByte(field.field.getBoolean(o) ? 1 : 0);
+                } else if (type == long.class) {
+                    writeVarLong(field.field.getLong(o));
+                } else if (type == double.class) {
+                    writeLong(Double.doubleToRawLongBits(field.field.getDouble(o)));
+                } else if (type == float.class) {
+                    writeVarInt(Float.floatToRawIntBits(field.field.getFloat(o)));
+                } else if (type == short.class) {
+                    writeVarLong(field.field.getShort(o));
+                } else if (type == byte.class) {
+                    writeByte(field.field.getByte(o));
+                } else {
+                    writeVarInt(field.field.getChar(o));
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeArray(Object array) throws IOException {
+            int length = Array.getLength(array);
+            writeVarInt(length);
+            if (array instanceof byte[]) {
+                writeBytes((byte[]) array);
+            } else if (array instanceof Object[]) {
+                for (Object element : (Object[]) array) {
+                    writeValue(element);
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    writeValue(Array.get(array, i));
+                }
+            }
+        }
+
+        private void writeClass(Class<?> c) throws IOException {
+            Integer index = classes.get(c);
+            if (index == null) {
+                writeVarInt(classes.size());
+                classes.put(c, classes.size());
+                writeString(c.getName());
+            } else {
+                writeVarInt(index);
+            }
+        }
+
+        private void writeString(String s) throws IOException {
+            Integer index = strings.get(s);
+            if (index == null) {
+                strings.put(s, strings.size());
+                writeByte(STRING);
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                writeVarInt(bytes.length);
+                writeBytes(bytes);
+            } else {
+                writeByte(STRING_REF);
+                writeVarInt(index);
+            }
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        /**
+         * Zig-zag encoded, so that small negative numbers stay short.
+         */
+        private void writeVarLong(long value) throws IOException {
+            ensure(10);
+            long zigZag = (value << 1) ^ (value >> 63);
+            while ((zigZag & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((zigZag & 0x7F) | 0x80);
+                zigZag >>>= 7;
+            }
+            buffer[position++] = (byte) zigZag;
+        }
+
+        private void writeLong(long value) throws IOException {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeByte(int b) throws IOException {
+            ensure(1);
+            buffer[position++] = (byte) b;
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.length - position) {
+                out.write(buffer, 0, position);
+                position = 0;
+                if (bytes.length > buffer.length) {
+                    out.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (position + bytes > buffer.length) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+    }
+
+
+    /**
+     * Reads root objects written by an {@link Encoder}. Bytes are only ever read as they are needed, so the
+     * underlying stream, which should be buffered, is positioned right after the last object read.
+     */
+    public static final class Decoder {
+        private final InputStream in;
+        private final ClassLoader classLoader;
+
+        private final List<String> strings = new ArrayList<>();
+        private final List<Class<?>> classes = new ArrayList<>();
+        private final List<Object> types = new ArrayList<>();
+        private final List<Object> objects = new ArrayList<>();
+
+        @Nullable
+        private final TypeTable typeTable;
+
+        public Decoder(InputStream in) {
+            this(in, Java8LstCodec.class.getClassLoader());
+        }
+
+        public Decoder(InputStream in, ClassLoader classLoader) {
+            this(in, classLoader, null);
+        }
+
+        Decoder(InputStream in, @Nullable TypeTable typeTable) {
+            this(in, Java8LstCodec.class.getClassLoader(), typeTable);
+        }
+
+        private Decoder(InputStream in, ClassLoader classLoader, @Nullable TypeTable typeTable) {
+            this.in = in;
+            this.classLoader = classLoader;
+            this.typeTable = typeTable;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T read() throws IOException {
+            try {
+                return (T) readValue();
+            } finally {
+                objects.clear();
+            }
+        }
+
+        private Object readValue() throws IOException {
+            int tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case STRING: {
+                    String s = new String(readBytes(readVarInt()), StandardCharsets.UTF_8);
+                    strings.add(s);
+                    return s;
+                }
+                case STRING_REF:
+                    return get(strings, readVarInt());
+                case REF:
+                    return get(objects, readVarInt());
+                case TYPE_REF:
+                    return get(types, readVarInt());
+                case SHARED_TYPE:
+                    if (typeTable == null) {
+                        throw new IOException("Encoded tree refers to shared types, but was decoded without them");
+                    }
+                    return typeTable.get(readVarInt());
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case INT:
+                    return (int) readVarLong();
+                case LONG:
+                    return readVarLong();
+                case DOUBLE:
+                    return Double.longBitsToDouble(readLong());
+                case FLOAT:
+                    return Float.intBitsToFloat(readVarInt());
+                case SHORT:
+                    return (short) readVarLong();
+                case BYTE:
+                    return (byte) readByte();
+                case CHAR:
+                    return (char) readVarInt();
+                case ENUM: {
+                    Class<?> c = readClass();
+                    if (!c.isEnum()) {
+                        throw new IOException(c.getName() + " in encoded tree is not an enum");
+                    }
+                    return get(Arrays.asList(c.getEnumConstants()), readVarInt());
+                }
+                case UUID:
+                    return new java.util.UUID(readLong(), readLong());
+                case PATH:
+                    return Paths.get(readString());
+                case CHARSET:
+                    return Charset.forName(readString());
+                case PATTERN:
+                    return Pattern.compile(readString(), readVarInt());
+                case CONSTANT: {
+                    Class<?> c = readClass();
+                    String name = readString();
+                    Object constant = constants.get(c).get(name);
+                    if (constant == null) {
+                        throw new IOException("No constant " + c.getName() + "." + name + " to decode");
+                    }
+                    return constant;
+                }
+                case COLLECTION:
+                    return readCollection();
+                case ARRAY:
+                    return readArray(readClass());
+                case OBJECT:
+                    return readObject(readClass());
+                default:
+                    throw new IOException("Unexpected tag " + tag + " in encoded tree");
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object readCollection() throws IOException {
+            int ordinal = readVarInt();
+            CollectionKind[] kinds = CollectionKind.values();
+            if (ordinal >= kinds.length) {
+                throw new IOException("Unexpected collection kind " + ordinal + " in encoded tree");
+            }
+            CollectionKind kind = kinds[ordinal];
+
+            Class<?> enumType = null;
+            if (kind == CollectionKind.ENUM_SET) {
+                enumType = readClass();
+                if (!enumType.isEnum()) {
+                    throw new IOException(enumType.getName() + " in encoded tree is not an enum");
+                }
+            }
+
+            int size = readVarInt();
+            Collection<Object> collection;
+            Map<Object, Object> map;
+            switch (kind) {
+                case ARRAY_LIST:
+                    collection = new ArrayList<>(size);
+                    break;
+                case LINKED_LIST:
+                    collection = new LinkedList<>();
+                    break;
+                case HASH_SET:
+                    collection = new HashSet<>(size * 4 / 3 + 1);
+                    break;
+                case LINKED_HASH_SET:
+                    collection = new LinkedHashSet<>(size * 4 / 3 + 1);
+                    break;
+                case TREE_SET:
+                    collection = new TreeSet<>();
+                    break;
+                case ENUM_SET:
+                    collection = EnumSet.noneOf((Class) enumType);
+                    break;
+                case HASH_MAP:
+                    return readMap(new HashMap<>(size * 4 / 3 + 1), size);
+                case LINKED_HASH_MAP:
+                    return readMap(new LinkedHashMap<>(size * 4 / 3 + 1), size);
+                case TREE_MAP:
+                    return readMap(new TreeMap<>(), size);
+                case IDENTITY_HASH_MAP:
+                    return readMap(new IdentityHashMap<>(size), size);
+                case ARRAYS_AS_LIST: {
+                    Object[] elements = new Object[size];
+                    List<Object> list = Arrays.asList(elements);
+                    objects.add(list);
+                    for (int i = 0; i < size; i++) {
+                        elements[i] = readValue();
+                    }
+                    return list;
+                }
+                case EMPTY_LIST:
+                    return readEmpty(Collections.emptyList(), size);
+                case EMPTY_SET:
+                    return readEmpty(Collections.emptySet(), size);
+                case EMPTY_MAP:
+                    return readEmpty(Collections.emptyMap(), size);
+                default: {
+                    // unmodifiable views and singletons can only be created once their contents are known, so
+                    // a reference from within their own contents decodes as null
+                    int index = objects.size();
+                    objects.add(null);
+                    Object wrapper;
+                    if (kind == CollectionKind.UNMODIFIABLE_MAP || kind == CollectionKind.SINGLETON_MAP) {
+                        map = new LinkedHashMap<>(size * 4 / 3 + 1);
+                        for (int i = 0; i < size; i++) {
+                            map.put(readValue(), readValue());
+                        }
+                        if (kind == CollectionKind.UNMODIFIABLE_MAP) {
+                            wrapper = Collections.unmodifiableMap(map);
+                        } else {
+                            Map.Entry<Object, Object> entry = single(map.entrySet(), kind);
+                            wrapper = Collections.singletonMap(entry.getKey(), entry.getValue());
+                        }
+                    } else {
+                        List<Object> elements = new ArrayList<>(size);
+                        for (int i = 0; i < size; i++) {
+                            elements.add(readValue());
+                        }
+                        switch (kind) {
+                            case UNMODIFIABLE_RANDOM_ACCESS_LIST:
+                                wrapper = Collections.unmodifiableList(elements);
+                                break;
+                            case UNMODIFIABLE_LIST:
+                                wrapper = Collections.unmodifiableList(new LinkedList<>(elements));
+                                break;
+                            case SINGLETON_LIST:
+                                wrapper = Collections.singletonList(single(elements, kind));
+                                break;
+                            case UNMODIFIABLE_SET:
+                                wrapper = Collections.unmodifiableSet(new LinkedHashSet<>(elements));
+                                break;
+                            case SINGLETON_SET:
+                                wrapper = Collections.singleton(single(elements, kind));
+                                break;
+                            default:
+                                throw new IllegalStateException("Unhandled collection kind " + kind);
+                        }
+                    }
+                    objects.set(index, wrapper);
+                    return wrapper;
+                }
+            }
+
+            objects.add(collection);
+            for (int i = 0; i < size; i++) {
+                collection.add(readValue());
+            }
+            return collection;
+        }
+
+        private Map<Object, Object> readMap(Map<Object, Object> map, int size) throws IOException {
+            objects.add(map);
+            for (int i = 0; i < size; i++) {
+                map.put(readValue(), readValue());
+            }
+            return map;
+        }
+
+        private Object readEmpty(Object empty, int size) throws IOException {
+            if (size != 0) {
+                throw new IOException("Expected an empty collection in encoded tree");
+            }
+            objects.add(empty);
+            return empty;
+        }
+
+        private <E> E single(Collection<E> elements, CollectionKind kind) throws IOException {
+            if (elements.size() != 1) {
+                throw new IOException("Expected a single element for " + kind + " in encoded tree");
+            }
+            return elements.iterator().next();
+        }
+
+        private Object readObject(Class<?> c) throws IOException {
+            if (c.isArray() || c.isEnum() || c.isInterface() || Modifier.isAbstract(c.getModifiers())) {
+                throw new IOException("Unable to decode an instance of " + c.getName());
+            }
+
+            Object o;
+            try {
+                o = instantiators.get(c).newInstance();
+            } catch (ReflectiveOperationException | IllegalStateException e) {
+                throw new IOException("Unable to instantiate " + c.getName(), e);
+            }
+
+            if (o instanceof JavaType) {
+                types.add(o);
+            } else {
+                objects.add(o);
+            }
+
+            for (FieldLayout field : layouts.get(c)) {
+                readField(o, field);
+            }
+            return o;
+        }
+
+        private void readField(Object o, FieldLayout field) throws IOException {
+            try {
+                Class<?> type = field.type;
+                if (!type.isPrimitive()) {
+                    Object value = readValue();
+                    if (value != null && !type.isInstance(value)) {
+                        throw new IOException("Unable to assign a " + value.getClass().getName() + " to " +
+                                field.field);
+                    }
+                    field.field.set(o, value);
+                } else if (type == int.class) {
+                    field.field.setInt(o, (int) readVarLong());
+                } else if (type == boolean.class) {
+                    field.field.setBoolean(o, readByte() != 0);
+                } else if (type == long.class) {
+                    field.field.setLong(o, readVarLong());
+                } else if (type == double.class) {
+                    field.field.setDouble(o, Double.longBitsToDouble(readLong()));
+                } else if (type == float.class) {
+                    field.field.setFloat(o, Float.intBitsToFloat(readVarInt()));
+                } else if (type == short.class) {
+                    field.field.setShort(o, (short) readVarLong());
+                } else if (type == byte.class) {
+                    field.field.setByte(o, (byte) readByte());
+                } else {
+                    field.field.setChar(o, (char) readVarInt());
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private Object readArray(Class<?> arrayType) throws IOException {
+            if (!arrayType.isArray()) {
+                throw new IOException(arrayType.getName() + " in encoded tree is not an array type");
+            }
+            Class<?> componentType = arrayType.getComponentType();
+            int length = readVarInt();
+            if (componentType == byte.class) {
+                byte[] array = readBytes(length);
+                objects.add(array);
+                return array;
+            }
+
+            Object array = Array.newInstance(componentType, length);
+            objects.add(array);
+            for (int i = 0; i < length; i++) {
+                try {
+                    Array.set(array, i, readValue());
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Unable to store an element of encoded " + arrayType.getName(), e);
+                }
+            }
+            return array;
+        }
+
+        /**
+         * Classes are checked against the allowlist by name, before they are loaded, so that an input can't cause
+         * an arbitrary class to be initialized.
+         */
+        private Class<?> readClass() throws IOException {
+            int index = readVarInt();
+            if (index < classes.size()) {
+                return classes.get(index);
+            } else if (index > classes.size()) {
+                throw new IOException("Unexpected class index " + index + " in encoded tree");
+            }
+
+            String name = readString();
+            if (!isAllowed(name)) {
+                throw new IOException("Refusing to decode an instance of " + name +
+                        ", which isn't a tree, type, marker or style");
+            }
+
+            Class<?> c;
+            try {
+                c = Class.forName(name, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unable to decode an instance of " + name, e);
+            }
+            classes.add(c);
+            return c;
+        }
+
+        private <E> E get(List<E> table, int index) throws IOException {
+            if (index >= table.size()) {
+                throw new IOException("Unexpected reference " + index + " in encoded tree");
+            }
+            return table.get(index);
+        }
+
+        private String readString() throws IOException {
+            Object s = readValue();
+            if (!(s instanceof String)) {
+                throw new IOException("Expected a string in encoded tree");
+            }
+            return (String) s;
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable length integer in encoded tree");
+        }
+
+        private long readVarLong() throws IOException {
+            long zigZag = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                zigZag |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return (zigZag >>> 1) ^ -(zigZag & 1);
+                }
+            }
+            throw new IOException("Malformed variable length integer in encoded tree");
+        }
+
+        private long readLong() throws IOException {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        private int readByte() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            return b;
+        }
+
+        private byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = in.read(bytes, read, length - read);
+                if (n < 0) {
+                    throw new EOFException();
+                }
+                read += n;
+            }
+            return bytes;
+        }
+    }
+}
@@ -15,31 +15,72 @@
  */
 package org.openrewrite.java;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
 import org.openrewrite.internal.lang.Nullable;
 import org.openrewrite.java.tree.J;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collection;
-import java.util.List;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-public class Java8Parser implements JavaParser {
+public class Java8Parser implements JavaParser, Closeable {
     private final JavaParser delegate;
 
+    @Nullable
+    private final Path spillDirectory;
+
+    private final int maxResidentCompilationUnits;
+
     Java8Parser(JavaParser delegate) {
+        this(delegate, null, 0);
+    }
+
+    Java8Parser(JavaParser delegate, @Nullable Path spillDirectory, int maxResidentCompilationUnits) {
         this.delegate = delegate;
+        this.spillDirectory = spillDirectory;
+        this.maxResidentCompilationUnits = maxResidentCompilationUnits;
     }
 
+    /**
+     * @return The parsed compilation units. When built with {@link Builder#spillTo(Path)}, this is a
+     * {@link SpilledCompilationUnits} that should be closed when no longer needed.
+     */
     @Override
     public List<J.CompilationUnit> parseInputs(Iterable<Input> sourceFiles, @Nullable Path relativeTo, ExecutionContext ctx) {
-        return delegate.parseInputs(sourceFiles, relativeTo, ctx);
+        if (spillDirectory == null) {
+            return delegate.parseInputs(sourceFiles, relativeTo, ctx);
+        }
+
+        SpilledCompilationUnits cus = new SpilledCompilationUnits(spillDirectory, maxResidentCompilationUnits);
+        invokeDelegate("parseInputs", new Class<?>[]{Iterable.class, Path.class, ExecutionContext.class, List.class},
+                sourceFiles, relativeTo, ctx, cus);
+        return cus;
     }
 
     @Override
@@ -47,22 +88,195 @@ public class Java8Parser implements JavaParser {
         return delegate.reset();
     }
 
+    /**
+     * Close the archives this parser has read its classpath from, and delete the temporary files it wrote
+     * in-memory jars to when they couldn't be read in place. Resetting the parser closes those files without
+     * deleting them. The parser is still usable afterwards, and opens them again if it needs them.
+     */
+    @Override
+    public void close() {
+        invokeDelegate("close", new Class<?>[0]);
+    }
+
     @Override
     public void setClasspath(Collection<Path> classpath) {
         delegate.setClasspath(classpath);
     }
 
+    /**
+     * Add an entry to the classpath of this parser. Unlike {@link #setClasspath(Collection)}, the entry is
+     * added to the classpath the parser already has, and types that failed to resolve before are looked up
+     * again, while everything already read from other entries stays loaded. Like parsing, this must not be
+     * called while another thread is using this parser.
+     *
+     * @param entry A jar or directory of class files.
+     */
+    public void addClasspathEntry(Path entry) {
+        invokeDelegate("addClasspathEntry", new Class<?>[]{Path.class}, entry);
+    }
+
+    /**
+     * Remove an entry from the classpath of this parser. Only the types that were read from the removed entry
+     * are forgotten, so they no longer resolve unless another entry provides them. Like parsing, this must not
+     * be called while another thread is using this parser.
+     *
+     * @param entry A jar or directory of class files previously on the classpath.
+     */
+    public void removeClasspathEntry(Path entry) {
+        invokeDelegate("removeClasspathEntry", new Class<?>[]{Path.class}, entry);
+    }
+
+    /**
+     * Parse a bundled synthetic corpus that exercises every kind of tree this parser maps and the common
+     * attribution paths in javac, until parse throughput stops improving or {@code maxIterations} is reached.
+     * The results are discarded and the parser is reset afterwards, so it is ready for real work. Warm-up
+     * parses aren't recorded to meters, flight recorder events or attribution timings.
+     *
+     * @param maxIterations The maximum number of times to parse the corpus, at least 1.
+     * @return How many iterations were needed and whether throughput stabilized.
+     */
+    public Java8ParserWarmup warmUp(int maxIterations) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("maxIterations must be at least 1, but was " + maxIterations);
+        }
+
+        invokeDelegate("setRecording", new Class<?>[]{boolean.class}, false);
+        try {
+            return Java8ParserWarmup.run(delegate, maxIterations);
+        } finally {
+            invokeDelegate("setRecording", new Class<?>[]{boolean.class}, true);
+        }
+    }
+
+    /**
+     * Create a parser with fresh compiler state that shares the immutable state of this one, including its
+     * classpath, in-memory class files and jars, and dependencies compiled to class files. Warm one prototype
+     * parser and fork it to hand each unit of work a dedicated parser without paying the full build cost.
+     *
+     * @return A new, independent parser.
+     */
+    public Java8Parser fork() {
+        return new Java8Parser((JavaParser) invokeDelegate("fork", new Class<?>[0]), spillDirectory,
+                maxResidentCompilationUnits);
+    }
+
+    private Object invokeDelegate(String methodName, Class<?>[] parameterTypes, Object... args) {
+        try {
+            // the delegate is loaded by a different class loader, so its type isn't visible from here
+            Method method = delegate.getClass().getDeclaredMethod(methodName, parameterTypes);
+            method.setAccessible(true);
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to call " + methodName + " on Java8Parser.", e.getCause());
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to call " + methodName + " on Java8Parser.", e);
+        }
+    }
+
     public static Builder builder() {
         return new Builder();
     }
 
+    /**
+     * Load the compiler on a daemon thread, so that a short-lived process can overlap the cost of class loading
+     * javac with its own startup work (argument parsing, walking the file system for sources, etc.) instead of
+     * paying it in full on the first call to {@link Builder#build()}.
+     */
+    public static void preload() {
+        Thread preload = new Thread(() -> {
+            Java8Parser parser;
+            try {
+                parser = builder().build();
+            } catch (IllegalStateException e) {
+                // run with a JRE, which the first real build reports; anything else is reported as uncaught
+                return;
+            }
+            parser.parse(new InMemoryExecutionContext(), "class Preload { void m() { Object o = this; } }");
+        }, "rewrite-java-8-preload");
+        preload.setDaemon(true);
+        preload.start();
+    }
+
+    /**
+     * Where the class files supplied as {@code classBytesClasspath} are kept for the
+     * lifetime of the parser. Dependencies compiled to class files for {@link #fork() forks}
+     * are kept the same way.
+     */
+    public enum ClassBytesStorage {
+        /**
+         * The class bytes are kept on the Java heap, exactly as supplied.
+         */
+        HEAP,
+
+        /**
+         * The class bytes are copied into a direct buffer outside of the Java heap.
+         */
+        DIRECT,
+
+        /**
+         * The class bytes are written to a temporary file that is memory-mapped, so the operating system
+         * can page them in and out as the compiler needs them.
+         */
+        MAPPED
+    }
+
     public static class Builder extends JavaParser.Builder<Java8Parser, Builder> {
+        private final List<ByteBuffer> jarClasspath = new ArrayList<>();
+        private ClassBytesStorage classBytesStorage = ClassBytesStorage.HEAP;
+        private boolean precompileDependencies;
+
+        @Nullable
+        private Path spillDirectory;
+
+        private int maxResidentCompilationUnits = 1000;
+
+        @Nullable
+        private Java8ParserInputPolicy inputPolicy;
+
+        @Nullable
+        private Duration fileTimeout;
+
+        @Nullable
+        private Duration batchTimeout;
+
+        @Nullable
+        private BooleanSupplier cancellation;
+
+        private int reportedAttributions = 10;
+
+        @Nullable
+        private MeterRegistry meterRegistry;
+
+        /**
+         * Class files compiled from {@code dependsOn} sources, keyed by a digest of those sources and the classpath
+         * they were compiled against, so that they are shared by every parser built with the same dependencies.
+         * Classpath entries are digested by the size and modification time of their files, so an entry that is
+         * rebuilt in place is compiled against again.
+         * Dependencies that don't compile cleanly on their own are cached too, so they aren't compiled again only
+         * to fail again.
+         */
+        private static final Map<String, CompiledDependencies> compiledDependencies = lruCache();
+
+        /**
+         * How many times dependencies have been compiled rather than found in the cache.
+         */
+        static final AtomicInteger dependencyCompilations = new AtomicInteger();
+
+        /**
+         * Loads javac from tools.jar alone. Its parent is the bootstrap class loader, since javac needs nothing
+         * else, so that a javac class isn't looked for on the application classpath first.
+         */
+        @Nullable
+        static ClassLoader toolsClassLoader;
 
         @Nullable
-        private static ClassLoader toolsClassLoader;
+        static ClassLoader toolsAwareClassLoader;
 
         @Nullable
-        private static ClassLoader toolsAwareClassLoader;
+        private static volatile Constructor<?> delegateParserConstructor;
 
         static synchronized void lazyInitClassLoaders() {
             if (toolsClassLoader != null && toolsAwareClassLoader != null) {
@@ -75,15 +289,33 @@ public class Java8Parser implements JavaParser {
                     throw new IllegalStateException("To use Java8Parser, you must run the process with a JDK and not a JRE.");
                 }
 
-                toolsClassLoader = new URLClassLoader(new URL[]{tools.toURI().toURL()}, Java8Parser.class.getClassLoader());
+                toolsClassLoader = new URLClassLoader(new URL[]{tools.toURI().toURL()}, null);
                 URLClassLoader appClassLoader = (URLClassLoader) Java8Parser.class.getClassLoader();
 
-                toolsAwareClassLoader = new URLClassLoader(appClassLoader.getURLs(), toolsClassLoader) {
+                List<URL> urls = new ArrayList<>(Arrays.asList(appClassLoader.getURLs()));
+                CodeSource codeSource = Java8Parser.class.getProtectionDomain().getCodeSource();
+                if (codeSource != null && urls.remove(codeSource.getLocation())) {
+                    // ReloadableJava8Parser* live alongside this class, so look for them here before any other entry
+                    urls.add(0, codeSource.getLocation());
+                }
+
+                toolsAwareClassLoader = new URLClassLoader(urls.toArray(new URL[0]), toolsClassLoader) {
+                    // When javac isn't on the application classpath, it can only be found in tools.jar. Searching every
+                    // application classpath entry first for each of the thousands of javac classes, only to fail with a
+                    // ClassNotFoundException, is a significant part of the cold start cost.
+                    private final boolean javacOnApplicationClasspath =
+                            findResource("com/sun/tools/javac/main/JavaCompiler.class") != null;
+
                     @Override
                     protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
                         if (!name.contains("ReloadableJava8Parser") &&
                                 !name.startsWith("com.sun.tools") &&
                                 !name.startsWith("com.sun.source")) {
+                            // shared with the caller, e.g. the Rewrite tree types the parser returns
+                            return appClassLoader.loadClass(name);
+                        }
+
+                        if (!javacOnApplicationClasspath && !name.contains("ReloadableJava8Parser")) {
                             return toolsClassLoader.loadClass(name);
                         }
 
@@ -109,8 +341,123 @@ public class Java8Parser implements JavaParser {
             }
         }
 
+        /**
+         * Keep class bytes supplied as {@code classBytesClasspath} off of the Java heap. The
+         * builder still holds on to the supplied arrays, so drop references to the builder once built.
+         */
+        public Builder classBytesStorage(ClassBytesStorage classBytesStorage) {
+            this.classBytesStorage = classBytesStorage;
+            return this;
+        }
+
+        /**
+         * Compile {@code dependsOn} sources to class files once and supply them to this and every later parser
+         * with the same dependencies as class bytes, rather than having each parser parse and attribute them
+         * again. Falls back to parsing the sources if they don't compile cleanly on their own.
+         */
+        public Builder precompileDependencies(boolean precompileDependencies) {
+            this.precompileDependencies = precompileDependencies;
+            return this;
+        }
+
+        /**
+         * Add whole jar archives held in memory to the classpath. Their central directories are indexed lazily
+         * and entries are only inflated when the compiler needs them, so there is no need to explode them into
+         * individual class files first.
+         */
+        public Builder classpathJars(Collection<byte[]> jars) {
+            for (byte[] jar : jars) {
+                jarClasspath.add(ByteBuffer.wrap(jar));
+            }
+            return this;
+        }
+
+        /**
+         * @see #classpathJars(Collection)
+         */
+        public Builder classpathJarBuffers(Collection<ByteBuffer> jars) {
+            jarClasspath.addAll(jars);
+            return this;
+        }
+
+        /**
+         * Write each compilation unit to a temporary file under {@code directory} as soon as it is mapped, and
+         * return results that page units back in on access, so that the heap doesn't have to hold all of them at
+         * once.
+         *
+         * @see SpilledCompilationUnits
+         */
+        public Builder spillTo(Path directory) {
+            this.spillDirectory = directory;
+            return this;
+        }
+
+        /**
+         * @param maxResidentCompilationUnits When spilling, the number of most recently used compilation units to
+         *                                    keep on the heap. Defaults to 1000.
+         */
+        public Builder maxResidentCompilationUnits(int maxResidentCompilationUnits) {
+            this.maxResidentCompilationUnits = maxResidentCompilationUnits;
+            return this;
+        }
+
+        /**
+         * Decide per input whether to parse it in full, without type attribution, or not at all.
+         */
+        public Builder inputPolicy(Java8ParserInputPolicy inputPolicy) {
+            this.inputPolicy = inputPolicy;
+            return this;
+        }
+
+        /**
+         * Stop attributing or mapping a single source once either phase has taken this long for it. The source is
+         * reported to {@link ExecutionContext#getOnError()} and the rest of the batch continues. Attribution is
+         * checked between classes and mapping every few hundred trees, so a phase may run somewhat over.
+         */
+        public Builder fileTimeout(Duration fileTimeout) {
+            this.fileTimeout = fileTimeout;
+            return this;
+        }
+
+        /**
+         * Stop attributing and mapping once a call to {@code parseInputs} has taken this long. Sources that weren't
+         * completed are reported to {@link ExecutionContext#getOnError()}.
+         */
+        public Builder batchTimeout(Duration batchTimeout) {
+            this.batchTimeout = batchTimeout;
+            return this;
+        }
+
+        /**
+         * Checked alongside the deadlines. Once it returns true, the current batch stops as if its deadline passed.
+         */
+        public Builder cancellation(BooleanSupplier cancellation) {
+            this.cancellation = cancellation;
+            return this;
+        }
+
+        /**
+         * @param classes The number of top-level classes that took longest to type attribute to report in the
+         *                {@link Java8ParserAttributionTimings#ATTRIBUTION_TIMINGS} message, or 0 not to time
+         *                classes. Defaults to 10.
+         */
+        public Builder reportSlowestAttributions(int classes) {
+            this.reportedAttributions = classes;
+            return this;
+        }
+
+        /**
+         * Register the parser's timers, counters and distribution summaries with this registry instead of
+         * {@link io.micrometer.core.instrument.Metrics#globalRegistry}.
+         */
+        public Builder meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
         @Override
         public Java8Parser build() {
+            Object event = Java8ParserEvents.beginConstruction();
             lazyInitClassLoaders();
 
             try {
@@ -118,19 +465,198 @@ public class Java8Parser implements JavaParser {
                 Class<?> reloadableParser = Class.forName("org.openrewrite.java.ReloadableJava8Parser", true,
                         toolsAwareClassLoader);
 
-                Constructor<?> delegateParserConstructor = reloadableParser
-                        .getDeclaredConstructor(Collection.class, Collection.class, Collection.class, Charset.class,
-                                Boolean.TYPE, Boolean.TYPE, Collection.class);
+                Collection<byte[]> effectiveClassBytesClasspath = classBytesClasspath;
+                Collection<Input> effectiveDependsOn = dependsOn;
+                if (precompileDependencies && dependsOn != null && !dependsOn.isEmpty()) {
+                    List<byte[]> compiled = compiledDependencies(reloadableParser);
+                    if (compiled != null) {
+                        effectiveClassBytesClasspath = new ArrayList<>(classBytesClasspath);
+                        effectiveClassBytesClasspath.addAll(compiled);
+                        effectiveDependsOn = null;
+                    }
+                }
+
+                JavaParser delegate = (JavaParser) delegateParserConstructor(reloadableParser)
+                        .newInstance(classpath, effectiveClassBytesClasspath, classBytesStorage, jarClasspath, effectiveDependsOn, charset, relaxedClassTypeMatching, logCompilationWarningsAndErrors, styles);
 
-                delegateParserConstructor.setAccessible(true);
+                if (inputPolicy != null) {
+                    Method setInputPolicy = reloadableParser.getDeclaredMethod("setInputPolicy", Java8ParserInputPolicy.class);
+                    setInputPolicy.setAccessible(true);
+                    setInputPolicy.invoke(delegate, inputPolicy);
+                }
 
-                JavaParser delegate = (JavaParser) delegateParserConstructor
-                        .newInstance(classpath, classBytesClasspath, dependsOn, charset, relaxedClassTypeMatching, logCompilationWarningsAndErrors, styles);
+                if (fileTimeout != null || batchTimeout != null || cancellation != null) {
+                    Method setLimits = reloadableParser.getDeclaredMethod("setLimits", Duration.class, Duration.class,
+                            BooleanSupplier.class);
+                    setLimits.setAccessible(true);
+                    setLimits.invoke(delegate, fileTimeout, batchTimeout, cancellation);
+                }
 
-                return new Java8Parser(delegate);
+                if (reportedAttributions > 0) {
+                    Method setReportedAttributions = reloadableParser.getDeclaredMethod("setReportedAttributions",
+                            int.class);
+                    setReportedAttributions.setAccessible(true);
+                    setReportedAttributions.invoke(delegate, reportedAttributions);
+                }
+
+                if (meterRegistry != null) {
+                    Method setMeterRegistry = reloadableParser.getDeclaredMethod("setMeterRegistry",
+                            MeterRegistry.class);
+                    setMeterRegistry.setAccessible(true);
+                    setMeterRegistry.invoke(delegate, meterRegistry);
+                }
+
+                if (Java8ParserEvents.shouldCommit(event)) {
+                    Java8ParserEvents.commitConstruction(event, classpath == null ? 0 : classpath.size(),
+                            dependsOn == null ? 0 : dependsOn.size(), effectiveDependsOn == null && dependsOn != null);
+                }
+                return new Java8Parser(delegate, spillDirectory, maxResidentCompilationUnits);
             } catch (Exception e) {
                 throw new IllegalStateException("Unable to construct Java8Parser.", e);
             }
         }
+
+        private static Constructor<?> delegateParserConstructor(Class<?> reloadableParser) throws NoSuchMethodException {
+            Constructor<?> constructor = delegateParserConstructor;
+            if (constructor == null) {
+                constructor = reloadableParser
+                        .getDeclaredConstructor(Collection.class, Collection.class, ClassBytesStorage.class, Collection.class,
+                                Collection.class, Charset.class,
+                                Boolean.TYPE, Boolean.TYPE, Collection.class);
+                constructor.setAccessible(true);
+                delegateParserConstructor = constructor;
+            }
+            return constructor;
+        }
+
+        @Nullable
+        private List<byte[]> compiledDependencies(Class<?> reloadableParser) throws ReflectiveOperationException {
+            String key = dependenciesKey();
+            CompiledDependencies compiled = compiledDependencies.get(key);
+            if (compiled == null) {
+                Method compileToClassBytes = reloadableParser.getDeclaredMethod("compileToClassBytes",
+                        Collection.class, Collection.class, Collection.class, Collection.class, Charset.class);
+                compileToClassBytes.setAccessible(true);
+
+                dependencyCompilations.incrementAndGet();
+                //noinspection unchecked
+                compiled = new CompiledDependencies((List<byte[]>) compileToClassBytes.invoke(null, dependsOn,
+                        classpath, classBytesClasspath, jarClasspath, charset));
+                compiledDependencies.put(key, compiled);
+            }
+            return compiled.classBytes;
+        }
+
+        private String dependenciesKey() {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                byte[] buffer = new byte[8192];
+                for (Input input : dependsOn) {
+                    digest.update(String.valueOf(input.getPath()).getBytes(StandardCharsets.UTF_8));
+                    try (InputStream source = input.getSource()) {
+                        for (int n = source.read(buffer); n != -1; n = source.read(buffer)) {
+                            digest.update(buffer, 0, n);
+                        }
+                    }
+                }
+                if (classpath != null) {
+                    for (Path entry : classpath) {
+                        digest.update(entry.toString().getBytes(StandardCharsets.UTF_8));
+                        digestEntry(digest, entry);
+                    }
+                }
+                for (byte[] classBytes : classBytesClasspath) {
+                    digest.update(classBytes);
+                }
+                for (ByteBuffer jar : jarClasspath) {
+                    digest.update(jar.duplicate());
+                }
+                digest.update(charset.name().getBytes(StandardCharsets.UTF_8));
+
+                StringBuilder key = new StringBuilder();
+                for (byte b : digest.digest()) {
+                    key.append(String.format("%02x", b));
+                }
+                return key.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * The relative path, size and modification time of every file in a directory, or the size and modification
+         * time of a jar, which is much cheaper than reading their contents and changes whenever they are rebuilt.
+         */
+        private static void digestEntry(MessageDigest digest, Path entry) throws IOException {
+            if (Files.isDirectory(entry)) {
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(entry)) {
+                    files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                }
+                for (Path file : files) {
+                    digest.update(entry.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                    digestAttributes(digest, file);
+                }
+            } else if (Files.exists(entry)) {
+                digestAttributes(digest, entry);
+            }
+        }
+
+        private static void digestAttributes(MessageDigest digest, Path file) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            ByteBuffer stamp = ByteBuffer.allocate(2 * Long.BYTES);
+            stamp.putLong(attributes.size()).putLong(attributes.lastModifiedTime().toMillis());
+            stamp.flip();
+            digest.update(stamp);
+        }
+
+        /**
+         * A client of a parser in another process, which is built with this builder's classpath, dependencies and
+         * charset. Anything else that would change how inputs are parsed can't be sent to another process, so it
+         * is rejected rather than silently dropped.
+         */
+        Java8ParserDaemon.Client buildClient() {
+            List<String> unsupported = new ArrayList<>();
+            if (styles != null && !styles.isEmpty()) {
+                unsupported.add("styles");
+            }
+            if (!classBytesClasspath.isEmpty() || !jarClasspath.isEmpty()) {
+                unsupported.add("class bytes or jars on the classpath");
+            }
+            if (inputPolicy != null) {
+                unsupported.add("an input policy");
+            }
+            if (fileTimeout != null || batchTimeout != null || cancellation != null) {
+                unsupported.add("timeouts or cancellation");
+            }
+            if (!unsupported.isEmpty()) {
+                throw new IllegalArgumentException("A parser in another process can't be built with " +
+                        String.join(", ", unsupported));
+            }
+            return new Java8ParserDaemon.Client(classpath, dependsOn, charset);
+        }
+
+        private static Map<String, CompiledDependencies> lruCache() {
+            return Collections.synchronizedMap(new LinkedHashMap<String, CompiledDependencies>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompiledDependencies> eldest) {
+                    return size() > 16;
+                }
+            });
+        }
+
+        private static class CompiledDependencies {
+            /**
+             * {@code null} when the dependencies don't compile cleanly on their own.
+             */
+            @Nullable
+            private final List<byte[]> classBytes;
+
+            private CompiledDependencies(@Nullable List<byte[]> classBytes) {
+                this.classBytes = classBytes;
+            }
+        }
     }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.ExecutionContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The top-level classes that took longest to type attribute, kept in an {@link ExecutionContext} message under
+ * {@link #ATTRIBUTION_TIMINGS} by parsers built with {@link Java8Parser.Builder#reportSlowestAttributions(int)}.
+ * A context used for several batches accumulates the slowest classes of all of them.
+ */
+public final class Java8ParserAttributionTimings {
+    /**
+     * The key of an {@link ExecutionContext} message holding a {@link Java8ParserAttributionTimings}.
+     */
+    public static final String ATTRIBUTION_TIMINGS = "org.openrewrite.java.Java8ParserAttributionTimings";
+
+    private static final Comparator<Timing> BY_DURATION = Comparator.comparingLong(t -> t.nanos);
+
+    private final int limit;
+
+    /**
+     * The fastest of the slowest classes at its head, to be evicted when a slower one is recorded.
+     */
+    private final PriorityQueue<Timing> slowest;
+
+    public Java8ParserAttributionTimings(int limit) {
+        this.limit = limit;
+        this.slowest = new PriorityQueue<>(limit + 1, BY_DURATION);
+    }
+
+    /**
+     * Called by the parser once a batch is attributed, with the total time spent attributing each class.
+     */
+    public synchronized void record(String className, String sourcePath, long nanos) {
+        if (slowest.size() < limit || (!slowest.isEmpty() && slowest.peek().nanos < nanos)) {
+            slowest.add(new Timing(className, sourcePath, nanos));
+            if (slowest.size() > limit) {
+                slowest.poll();
+            }
+        }
+    }
+
+    /**
+     * @return The slowest classes, slowest first.
+     */
+    public synchronized List<Timing> getSlowest() {
+        List<Timing> timings = new ArrayList<>(slowest);
+        timings.sort(BY_DURATION.reversed());
+        return timings;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder("Slowest classes to attribute:");
+        for (Timing timing : getSlowest()) {
+            report.append(String.format("%n  %8.1f ms  %s (%s)", timing.nanos / 1e6, timing.className,
+                    timing.sourcePath));
+        }
+        return report.toString();
+    }
+
+    public static final class Timing {
+        private final String className;
+        private final String sourcePath;
+        private final long nanos;
+
+        private Timing(String className, String sourcePath, long nanos) {
+            this.className = className;
+            this.sourcePath = sourcePath;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return The binary name of the top-level class.
+         */
+        public String getClassName() {
+            return className;
+        }
+
+        /**
+         * @return The path of the source file declaring the class, as given to the parser.
+         */
+        public String getSourcePath() {
+            return sourcePath;
+        }
+
+        public Duration getDuration() {
+            return Duration.ofNanos(nanos);
+        }
+
+        @Override
+        public String toString() {
+            return className + " (" + sourcePath + ") " + getDuration();
+        }
+    }
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Parser;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.J;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A long-lived local process that keeps warmed {@link Java8Parser} instances for each distinct classpath, so
+ * that short-lived processes like a command line tool don't pay for JVM startup, class loading javac, and JIT
+ * warm-up on every invocation. Parse requests are accepted on a loopback socket, and clients must present the
+ * token the daemon writes to its state file alongside the port it listens on. A daemon exits once it has been idle
+ * for its timeout, or once its state file is deleted or taken over by another daemon.
+ */
+public class Java8ParserDaemon {
+    private static final Path DEFAULT_STATE_FILE = Paths.get(System.getProperty("user.home"),
+            ".rewrite", "java8-parser-daemon", "daemon.properties");
+
+    private static final int WARMUP_ITERATIONS = 30;
+    private static final int MAX_CLASSPATHS = 8;
+
+    /**
+     * Idle parsers kept per classpath. Any more than this are only built to serve a burst of concurrent requests,
+     * and are dropped once they are done.
+     */
+    private static final int MAX_IDLE_PARSERS = Runtime.getRuntime().availableProcessors();
+
+    private final Path stateFile;
+    private final long idleTimeoutMillis;
+    private final int warmupIterations;
+    private final int maxIdleParsers;
+    private final String token = UUID.randomUUID().toString();
+
+    /**
+     * Idle, warmed parsers by {@link #fingerprint(Java8ParserProtocol.Request) fingerprint}, least recently used first.
+     */
+    private final Map<String, Deque<Java8Parser>> parsers;
+
+    private volatile long lastRequest = System.currentTimeMillis();
+
+    Java8ParserDaemon(Path stateFile, long idleTimeoutMillis) {
+        this(stateFile, idleTimeoutMillis, WARMUP_ITERATIONS, MAX_IDLE_PARSERS, MAX_CLASSPATHS);
+    }
+
+    Java8ParserDaemon(Path stateFile, long idleTimeoutMillis, int warmupIterations, int maxIdleParsers,
+                      int maxClasspaths) {
+        this.stateFile = stateFile;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.warmupIterations = warmupIterations;
+        this.maxIdleParsers = maxIdleParsers;
+        this.parsers = new LinkedHashMap<String, Deque<Java8Parser>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Deque<Java8Parser>> eldest) {
+                if (size() > maxClasspaths) {
+                    eldest.getValue().forEach(Java8Parser::close);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Run the daemon in this process until it has been idle for the timeout.
+     *
+     * @param args Optionally, the idle timeout in minutes (default 180) followed by the path of the state file.
+     */
+    public static void main(String[] args) throws IOException {
+        long idleTimeoutMinutes = args.length > 0 ? Long.parseLong(args[0]) : 180;
+        Path stateFile = args.length > 1 ? Paths.get(args[1]) : DEFAULT_STATE_FILE;
+        new Java8ParserDaemon(stateFile, TimeUnit.MINUTES.toMillis(idleTimeoutMinutes)).run();
+    }
+
+    /**
+     * Connect to the daemon for the current user, starting one with this process's classpath if none is running.
+     *
+     * @return A parser that sends its inputs to the daemon.
+     */
+    public static JavaParser connect() {
+        return connect(Java8Parser.builder());
+    }
+
+    /**
+     * Connect to the daemon for the current user, starting one with this process's classpath if none is running.
+     *
+     * @param builder The classpath, dependencies and charset the daemon's parser is built with.
+     * @return A parser that sends its inputs to the daemon.
+     * @throws IllegalArgumentException If the builder is configured with anything else that changes how inputs are
+     *                                  parsed, which can't be sent to the daemon.
+     */
+    public static JavaParser connect(Java8Parser.Builder builder) {
+        return connect(DEFAULT_STATE_FILE, builder);
+    }
+
+    static JavaParser connect(Path stateFile, Java8Parser.Builder builder) {
+        Client client = builder.buildClient();
+
+        Properties state = readState(stateFile);
+        if (state == null || !isAlive(state)) {
+            start(stateFile);
+            state = readState(stateFile);
+            if (state == null) {
+                throw new IllegalStateException("Java8Parser daemon did not start. See " +
+                        stateFile.resolveSibling("daemon.log"));
+            }
+        }
+        client.connectTo(Integer.parseInt(state.getProperty("port")), state.getProperty("token"));
+        return client;
+    }
+
+    void run() throws IOException {
+        ExecutorService requests = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "rewrite-java-8-daemon-request");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            writeState(server.getLocalPort());
+            server.setSoTimeout((int) Math.min(TimeUnit.SECONDS.toMillis(1), idleTimeoutMillis));
+
+            while (System.currentTimeMillis() - lastRequest < idleTimeoutMillis && ownsStateFile()) {
+                try {
+                    Socket socket = server.accept();
+                    lastRequest = System.currentTimeMillis();
+                    requests.submit(() -> handle(socket));
+                } catch (SocketTimeoutException ignored) {
+                    // check for idleness
+                }
+            }
+        } finally {
+            requests.shutdownNow();
+            if (ownsStateFile()) {
+                Files.deleteIfExists(stateFile);
+            }
+        }
+    }
+
+    private boolean ownsStateFile() {
+        Properties state = readState(stateFile);
+        return state != null && token.equals(state.getProperty("token"));
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            // compared in constant time, so that the token can't be guessed a character at a time from response times
+            if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), in.readUTF().getBytes(StandardCharsets.UTF_8))) {
+                return;
+            }
+
+            Java8ParserProtocol.Request request = Java8ParserProtocol.readRequest(in);
+
+            // the whole response is written before any of it is sent, so that a failure part way is reported to the
+            // client rather than leaving it with a truncated response
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            try {
+                Java8ParserProtocol.writeResponse(new DataOutputStream(response), parse(request));
+            } catch (Throwable t) {
+                response.reset();
+                Java8ParserProtocol.writeResponse(new DataOutputStream(response), new Java8ParserProtocol.Response(
+                        Collections.emptyList(), Collections.singletonList(Java8ParserProtocol.stackTrace(t))));
+            }
+            response.writeTo(out);
+            out.flush();
+        } catch (IOException e) {
+            // the client went away, nothing to respond to
+        } finally {
+            lastRequest = System.currentTimeMillis();
+        }
+    }
+
+    private Java8ParserProtocol.Response parse(Java8ParserProtocol.Request request) {
+        String fingerprint = fingerprint(request);
+        Java8Parser parser = checkout(fingerprint, request);
+
+        // a parser that throws is never checked in
+        List<String> errors = new ArrayList<>();
+        ExecutionContext ctx = new InMemoryExecutionContext(t -> errors.add(Java8ParserProtocol.stackTrace(t)));
+        List<J.CompilationUnit> cus;
+        try {
+            cus = parser.parseInputs(request.inputs, request.relativeTo, ctx);
+        } catch (RuntimeException e) {
+            parser.close();
+            throw e;
+        }
+
+        // a parser that reported errors is discarded rather than checked in, since its compiler state can't be trusted
+        if (errors.isEmpty()) {
+            parser.reset();
+            checkin(fingerprint, parser);
+        } else {
+            parser.close();
+        }
+
+        return new Java8ParserProtocol.Response(cus, errors);
+    }
+
+    Java8Parser checkout(String fingerprint, Java8ParserProtocol.Request request) {
+        synchronized (parsers) {
+            Java8Parser idle = parsers.computeIfAbsent(fingerprint, f -> new ArrayDeque<>()).pollFirst();
+            if (idle != null) {
+                return idle;
+            }
+        }
+
+        Java8Parser parser = builder(request).build();
+        parser.warmUp(warmupIterations);
+        return parser;
+    }
+
+    void checkin(String fingerprint, Java8Parser parser) {
+        synchronized (parsers) {
+            Deque<Java8Parser> idle = parsers.computeIfAbsent(fingerprint, f -> new ArrayDeque<>());
+            if (idle.size() < maxIdleParsers) {
+                idle.offerFirst(parser);
+                return;
+            }
+        }
+        parser.close();
+    }
+
+    /**
+     * Without changing which classpaths were used most recently.
+     */
+    int idleParsers(String fingerprint) {
+        synchronized (parsers) {
+            for (Map.Entry<String, Deque<Java8Parser>> idle : parsers.entrySet()) {
+                if (idle.getKey().equals(fingerprint)) {
+                    return idle.getValue().size();
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * A builder configured with everything a request carries for the parser that parses it.
+     */
+    static Java8Parser.Builder builder(Java8ParserProtocol.Request request) {
+        Java8Parser.Builder builder = Java8Parser.builder();
+        if (request.classpath != null) {
+            builder.classpath(request.classpath);
+        }
+        if (request.dependsOn != null) {
+            builder.dependsOn(request.dependsOn);
+        }
+        if (request.charset != null) {
+            builder.charset(request.charset);
+        }
+        return builder;
+    }
+
+    /**
+     * Of everything the parser for a request is built with. Includes the size and modification time of each
+     * classpath entry, so that a rebuilt jar gets a fresh parser. Without a classpath, the parser falls back to
+     * the daemon's own classpath, which is fingerprinted in the same way.
+     */
+    static String fingerprint(Java8ParserProtocol.Request request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Path entry : request.classpath == null ? processClasspath() : request.classpath) {
+                File file = entry.toFile();
+                digest.update((entry + ":" + file.length() + ":" + file.lastModified() + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+            if (request.dependsOn != null) {
+                byte[] buffer = new byte[8192];
+                for (Parser.Input input : request.dependsOn) {
+                    digest.update(("dependsOn:" + input.getPath() + "\n").getBytes(StandardCharsets.UTF_8));
+                    try (InputStream source = input.getSource()) {
+                        for (int n = source.read(buffer); n != -1; n = source.read(buffer)) {
+                            digest.update(buffer, 0, n);
+                        }
+                    }
+                }
+            }
+            if (request.charset != null) {
+                digest.update(("charset:" + request.charset.name()).getBytes(StandardCharsets.UTF_8));
+            }
+
+            StringBuilder fingerprint = new StringBuilder();
+            for (byte b : digest.digest()) {
+                fingerprint.append(String.format("%02x", b));
+            }
+            return fingerprint.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The classpath of this process, which a parser without a classpath of its own resolves types against.
+     */
+    static List<Path> processClasspath() {
+        List<Path> classpath = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                classpath.add(Paths.get(entry));
+            }
+        }
+        return classpath;
+    }
+
+    private void writeState(int port) throws IOException {
+        Files.createDirectories(stateFile.getParent());
+
+        Properties state = new Properties();
+        state.setProperty("port", Integer.toString(port));
+        state.setProperty("token", token);
+
+        Path tmp = Files.createTempFile(stateFile.getParent(), "daemon", ".properties");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            state.store(out, "Java8Parser daemon");
+        }
+        Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Nullable
+    private static Properties readState(Path stateFile) {
+        if (!Files.exists(stateFile)) {
+            return null;
+        }
+
+        Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(stateFile)) {
+            state.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        return state.getProperty("port") == null || state.getProperty("token") == null ? null : state;
+    }
+
+    private static boolean isAlive(Properties state) {
+        try (Socket ignored = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(state.getProperty("port")))) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void start(Path stateFile) {
+        try {
+            Files.createDirectories(stateFile.getParent());
+            Files.deleteIfExists(stateFile);
+
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    Java8ParserDaemon.class.getName(), "180", stateFile.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(stateFile.resolveSibling("daemon.log").toFile()))
+                    .start();
+
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (!Files.exists(stateFile) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while starting the Java8Parser daemon", e);
+        }
+    }
+
+    /**
+     * Sends each batch of inputs to the daemon, along with the classpath, dependencies and charset its parser is
+     * built with. Compiler state is reset by the daemon after every batch. Without a classpath, this process's
+     * classpath is sent, just as a parser in this process would fall back to it.
+     */
+    static class Client implements JavaParser {
+        private int port;
+        private String token = "";
+
+        @Nullable
+        private Collection<Path> classpath;
+
+        @Nullable
+        private final Collection<Input> dependsOn;
+
+        @Nullable
+        private final Charset charset;
+
+        Client(@Nullable Collection<Path> classpath, @Nullable Collection<Input> dependsOn, @Nullable Charset charset) {
+            this.classpath = classpath;
+            this.dependsOn = dependsOn;
+            this.charset = charset;
+        }
+
+        void connectTo(int port, String token) {
+            this.port = port;
+            this.token = token;
+        }
+
+        @Override
+        public List<J.CompilationUnit> parseInputs(Iterable<Input> sourceFiles, @Nullable Path relativeTo, ExecutionContext ctx) {
+            List<Input> inputs = new ArrayList<>();
+            sourceFiles.forEach(inputs::add);
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+                out.writeUTF(token);
+                Java8ParserProtocol.writeRequest(out, new Java8ParserProtocol.Request(
+                        classpath == null ? processClasspath() : classpath, dependsOn, charset, relativeTo, inputs));
+
+                Java8ParserProtocol.Response response = Java8ParserProtocol.readResponse(in);
+                for (String error : response.errors) {
+                    ctx.getOnError().accept(new JavaParsingException(error, null));
+                }
+                return response.compilationUnits;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public JavaParser reset() {
+            return this;
+        }
+
+        @Override
+        public void setClasspath(Collection<Path> classpath) {
+            this.classpath = classpath;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.internal.lang.Nullable;
+
+/**
+ * Java Flight Recorder events for each phase of parsing, so that a slow batch can be traced to the file, class or
+ * phase that made it slow. Events are in the "OpenRewrite / Java 8 parser" category, and are recorded when the JVM
+ * has a flight recorder (OpenJDK 8u262 and later) and a recording enables them, e.g.
+ * {@code -XX:StartFlightRecording=settings=profile}.
+ * <p>
+ * Each {@code begin} method returns {@code null} when its event won't be recorded. A begun event is ended with
+ * {@link #shouldCommit(Object)}, and only when that returns true does the caller compute what the event records
+ * and pass it to the matching {@code commit} method, so that a parse with no recording running, or with events
+ * below their threshold, pays little more than a null check. These methods are public because the parser calls
+ * them from its own class loader.
+ */
+public final class Java8ParserEvents {
+    private static final boolean AVAILABLE = isAvailable();
+
+    private Java8ParserEvents() {
+    }
+
+    /**
+     * The flight recorder's classes are only referenced from {@link Java8ParserFlightRecorder}, which isn't compiled
+     * when the JDK building this project has no flight recorder, so both have to be present.
+     */
+    private static boolean isAvailable() {
+        ClassLoader classLoader = Java8ParserEvents.class.getClassLoader();
+        try {
+            Class.forName("jdk.jfr.Event", false, classLoader);
+            Class.forName("org.openrewrite.java.Java8ParserFlightRecorder", false, classLoader);
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * End an event, and tell whether it is to be committed.
+     *
+     * @param event An event returned by one of the {@code begin} methods.
+     * @return {@code false} when the event is {@code null} or didn't last as long as its threshold.
+     */
+    public static boolean shouldCommit(@Nullable Object event) {
+        return event != null && Java8ParserFlightRecorder.shouldCommit(event);
+    }
+
+    @Nullable
+    public static Object beginJdkParse() {
+        return AVAILABLE ? Java8ParserFlightRecorder.beginJdkParse() : null;
+    }
+
+    public static void commitJdkParse(@Nullable Object event, String path, long bytes) {
+        if (event != null) {
+            Java8ParserFlightRecorder.commitJdkParse(event, path, bytes);
+        }
+    }
+
+    @Nullable
+    public static Object beginAttribution() {
+        return AVAILABLE ? Java8ParserFlightRecorder.beginAttribution() : null;
+    }
+
+    public static void commitAttribution(@Nullable Object event, String className, String path) {
+        if (event != null) {
+            Java8ParserFlightRecorder.commitAttribution(event, className, path);
+        }
+    }
+
+    @Nullable
+    public static Object beginMapping() {
+        return AVAILABLE ? Java8ParserFlightRecorder.beginMapping() : null;
+    }
+
+    public static void commitMapping(@Nullable Object event, String path, long bytes, int nodes) {
+        if (event != null) {
+            Java8ParserFlightRecorder.commitMapping(event, path, bytes, nodes);
+        }
+    }
+
+    @Nullable
+    public static Object beginTypeCacheMiss() {
+        return AVAILABLE ? Java8ParserFlightRecorder.beginTypeCacheMiss() : null;
+    }
+
+    public static void commitTypeCacheMiss(@Nullable Object event, String type) {
+        if (event != null) {
+            Java8ParserFlightRecorder.commitTypeCacheMiss(event, type);
+        }
+    }
+
+    @Nullable
+    public static Object beginConstruction() {
+        return AVAILABLE ? Java8ParserFlightRecorder.beginConstruction() : null;
+    }
+
+    public static void commitConstruction(@Nullable Object event, int classpathEntries, int dependencies,
+                                          boolean precompiledDependencies) {
+        if (event != null) {
+            Java8ParserFlightRecorder.commitConstruction(event, classpathEntries, dependencies,
+                    precompiledDependencies);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import jdk.jfr.*;
+import org.openrewrite.internal.lang.Nullable;
+
+/**
+ * The events {@link Java8ParserEvents} begins and commits. Kept apart from it, and only loaded when the flight
+ * recorder is available, since its classes extend {@link Event}: the build leaves this class out when its JDK has
+ * no flight recorder, and events are then never recorded.
+ */
+final class Java8ParserFlightRecorder {
+    private Java8ParserFlightRecorder() {
+    }
+
+    @Nullable
+    static Object beginJdkParse() {
+        return begin(new JdkParse());
+    }
+
+    @Nullable
+    static Object beginAttribution() {
+        return begin(new Attribution());
+    }
+
+    @Nullable
+    static Object beginMapping() {
+        return begin(new Mapping());
+    }
+
+    @Nullable
+    static Object beginTypeCacheMiss() {
+        return begin(new TypeCacheMiss());
+    }
+
+    @Nullable
+    static Object beginConstruction() {
+        return begin(new Construction());
+    }
+
+    @Nullable
+    private static Object begin(Event event) {
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    static boolean shouldCommit(Object e) {
+        Event event = (Event) e;
+        event.end();
+        return event.shouldCommit();
+    }
+
+    static void commitJdkParse(Object e, String path, long bytes) {
+        JdkParse event = (JdkParse) e;
+        event.path = path;
+        event.bytes = bytes;
+        event.commit();
+    }
+
+    static void commitAttribution(Object e, String className, String path) {
+        Attribution event = (Attribution) e;
+        event.className = className;
+        event.path = path;
+        event.commit();
+    }
+
+    static void commitMapping(Object e, String path, long bytes, int nodes) {
+        Mapping event = (Mapping) e;
+        event.path = path;
+        event.bytes = bytes;
+        event.nodes = nodes;
+        event.commit();
+    }
+
+    static void commitTypeCacheMiss(Object e, String type) {
+        TypeCacheMiss event = (TypeCacheMiss) e;
+        event.type = type;
+        event.commit();
+    }
+
+    static void commitConstruction(Object e, int classpathEntries, int dependencies,
+                                   boolean precompiledDependencies) {
+        Construction event = (Construction) e;
+        event.classpathEntries = classpathEntries;
+        event.dependencies = dependencies;
+        event.precompiledDependencies = precompiledDependencies;
+        event.commit();
+    }
+
+    @Name("org.openrewrite.java8.JdkParse")
+    @Label("JDK Parse")
+    @Description("The JDK parsing and tokenizing one source file")
+    @Category({"OpenRewrite", "Java 8 Parser"})
+    static final class JdkParse extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("org.openrewrite.java8.Attribution")
+    @Label("Type Attribution")
+    @Description("The JDK attributing types to one top-level class")
+    @Category({"OpenRewrite", "Java 8 Parser"})
+    static final class Attribution extends Event {
+        @Label("Class")
+        String className;
+
+        @Label("Path")
+        String path;
+    }
+
+    @Name("org.openrewrite.java8.Mapping")
+    @Label("LST Mapping")
+    @Description("Mapping the JDK's tree of one source file to a compilation unit")
+    @Category({"OpenRewrite", "Java 8 Parser"})
+    static final class Mapping extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Nodes")
+        @Description("The number of JDK tree nodes converted")
+        int nodes;
+    }
+
+    @Name("org.openrewrite.java8.TypeCacheMiss")
+    @Label("Type Cache Miss")
+    @Description("Building a class type that had not been built before in this batch")
+    @Category({"OpenRewrite", "Java 8 Parser"})
+    static final class TypeCacheMiss extends Event {
+        @Label("Type")
+        String type;
+    }
+
+    @Name("org.openrewrite.java8.Construction")
+    @Label("Parser Construction")
+    @Description("Building a Java8Parser")
+    @Category({"OpenRewrite", "Java 8 Parser"})
+    static final class Construction extends Event {
+        @Label("Classpath Entries")
+        int classpathEntries;
+
+        @Label("Dependencies")
+        int dependencies;
+
+        @Label("Precompiled Dependencies")
+        boolean precompiledDependencies;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.ExecutionContext;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Decides how much work {@link Java8Parser} spends on each input, so that a few very large or machine-generated
+ * sources don't dominate the time and heap it takes to parse a repository. Rules are checked in the order they are
+ * added, and the first one that matches an input decides its {@link Action}. Inputs no rule matches are parsed in
+ * full. The source of an input is only read when a rule that looks at it is checked.
+ */
+public final class Java8ParserInputPolicy {
+    /**
+     * The key of an {@link ExecutionContext} message holding the {@code Set<Path>} of inputs that were skipped.
+     */
+    public static final String SKIPPED_INPUTS = "org.openrewrite.java.Java8ParserInputPolicy.skippedInputs";
+
+    private static final Pattern GENERATED = Pattern.compile("@(javax\\.annotation\\.(processing\\.)?)?Generated\\b");
+
+    public enum Action {
+        /**
+         * Parse, attribute and map the input to a compilation unit.
+         */
+        PARSE,
+
+        /**
+         * Map the input to a compilation unit without type attribution. Its declarations are still available to
+         * attribute other inputs.
+         */
+        SYNTAX_ONLY,
+
+        /**
+         * Produce no compilation unit for the input and record it in the {@link #SKIPPED_INPUTS} message instead.
+         * Its declarations are still available to attribute other inputs.
+         */
+        SKIP
+    }
+
+    private final List<Rule> rules;
+
+    private Java8ParserInputPolicy(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    public static Java8ParserInputPolicy parseAll() {
+        return new Java8ParserInputPolicy(Collections.emptyList());
+    }
+
+    /**
+     * @param maxLength The number of characters above which a source is considered large.
+     * @param action    What to do with large sources.
+     */
+    public Java8ParserInputPolicy largerThan(int maxLength, Action action) {
+        return withRule((path, source) -> source.get().length() > maxLength, action);
+    }
+
+    /**
+     * @param action What to do with sources that carry a {@code @Generated} annotation.
+     */
+    public Java8ParserInputPolicy generated(Action action) {
+        return withRule((path, source) -> GENERATED.matcher(source.get()).find(), action);
+    }
+
+    /**
+     * @param glob   A glob, in the syntax of {@link java.nio.file.FileSystem#getPathMatcher(String)}, matched
+     *               against the path of the source relative to the directory being parsed.
+     * @param action What to do with sources whose path matches.
+     */
+    public Java8ParserInputPolicy matching(String glob, Action action) {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        return withRule((path, source) -> matcher.matches(path), action);
+    }
+
+    private Java8ParserInputPolicy withRule(BiPredicate<Path, Supplier<String>> matches, Action action) {
+        List<Rule> withRule = new ArrayList<>(rules);
+        withRule.add(new Rule(matches, action));
+        return new Java8ParserInputPolicy(withRule);
+    }
+
+    public Action actionFor(Path path, String source) {
+        return actionFor(path, () -> source);
+    }
+
+    /**
+     * @param path   The path of the source relative to the directory being parsed.
+     * @param source Reads the source, at most once, and only if a rule needs it.
+     * @return What to do with the source.
+     */
+    public Action actionFor(Path path, Supplier<String> source) {
+        Supplier<String> readOnce = new Supplier<String>() {
+            private String read;
+
+            @Override
+            public String get() {
+                if (read == null) {
+                    read = source.get();
+                }
+                return read;
+            }
+        };
+
+        for (Rule rule : rules) {
+            if (rule.matches.test(path, readOnce)) {
+                return rule.action;
+            }
+        }
+        return Action.PARSE;
+    }
+
+    private static class Rule {
+        private final BiPredicate<Path, Supplier<String>> matches;
+        private final Action action;
+
+        private Rule(BiPredicate<Path, Supplier<String>> matches, Action action) {
+            this.matches = matches;
+            this.action = action;
+        }
+    }
+}
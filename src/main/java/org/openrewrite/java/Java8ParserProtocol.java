@@ -0,0 +1,241 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.Parser;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.J;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * The wire format used to send parse requests to a {@link Java8Parser} running in another process and to
+ * receive the parsed compilation units back.
+ */
+final class Java8ParserProtocol {
+    static final int VERSION = 4;
+
+    private Java8ParserProtocol() {
+    }
+
+    /**
+     * Besides the inputs, carries everything the parser in the other process is built with. Sources are sent as
+     * the bytes they are read as, and decoded with {@link #charset} there, just as they would be here.
+     */
+    static final class Request {
+        @Nullable
+        final Collection<Path> classpath;
+
+        @Nullable
+        final Collection<Parser.Input> dependsOn;
+
+        /**
+         * {@code null} for the {@link Java8Parser.Builder} default.
+         */
+        @Nullable
+        final Charset charset;
+
+        @Nullable
+        final Path relativeTo;
+
+        final List<Parser.Input> inputs;
+
+        Request(@Nullable Collection<Path> classpath, @Nullable Collection<Parser.Input> dependsOn,
+                @Nullable Charset charset, @Nullable Path relativeTo, List<Parser.Input> inputs) {
+            this.classpath = classpath;
+            this.dependsOn = dependsOn;
+            this.charset = charset;
+            this.relativeTo = relativeTo;
+            this.inputs = inputs;
+        }
+    }
+
+    static final class Response {
+        final List<J.CompilationUnit> compilationUnits;
+        final List<String> errors;
+
+        Response(List<J.CompilationUnit> compilationUnits, List<String> errors) {
+            this.compilationUnits = compilationUnits;
+            this.errors = errors;
+        }
+    }
+
+    static void writeRequest(DataOutputStream out, Request request) throws IOException {
+        out.writeInt(VERSION);
+        if (request.classpath == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(request.classpath.size());
+            for (Path entry : request.classpath) {
+                writeString(out, entry.toString());
+            }
+        }
+        if (request.dependsOn == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(request.dependsOn.size());
+            for (Parser.Input input : request.dependsOn) {
+                writeInput(out, input);
+            }
+        }
+        writeNullableString(out, request.charset == null ? null : request.charset.name());
+        writeNullableString(out, request.relativeTo == null ? null : request.relativeTo.toString());
+        out.writeInt(request.inputs.size());
+        for (Parser.Input input : request.inputs) {
+            writeInput(out, input);
+        }
+        out.flush();
+    }
+
+    static Request readRequest(DataInputStream in) throws IOException {
+        checkVersion(in.readInt());
+
+        int classpathSize = in.readInt();
+        List<Path> classpath = null;
+        if (classpathSize >= 0) {
+            classpath = new ArrayList<>(classpathSize);
+            for (int i = 0; i < classpathSize; i++) {
+                classpath.add(Paths.get(readString(in)));
+            }
+        }
+
+        int dependsOnSize = in.readInt();
+        List<Parser.Input> dependsOn = null;
+        if (dependsOnSize >= 0) {
+            dependsOn = new ArrayList<>(dependsOnSize);
+            for (int i = 0; i < dependsOnSize; i++) {
+                dependsOn.add(readInput(in));
+            }
+        }
+
+        String charset = readNullableString(in);
+        String relativeTo = readNullableString(in);
+
+        int inputCount = in.readInt();
+        List<Parser.Input> inputs = new ArrayList<>(inputCount);
+        for (int i = 0; i < inputCount; i++) {
+            inputs.add(readInput(in));
+        }
+
+        return new Request(classpath, dependsOn, charset == null ? null : Charset.forName(charset),
+                relativeTo == null ? null : Paths.get(relativeTo), inputs);
+    }
+
+    private static void writeInput(DataOutputStream out, Parser.Input input) throws IOException {
+        writeString(out, input.getPath().toString());
+        ByteArrayOutputStream source = new ByteArrayOutputStream();
+        try (InputStream in = input.getSource()) {
+            byte[] buffer = new byte[8192];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                source.write(buffer, 0, n);
+            }
+        }
+        out.writeInt(source.size());
+        source.writeTo(out);
+    }
+
+    private static Parser.Input readInput(DataInputStream in) throws IOException {
+        Path path = Paths.get(readString(in));
+        byte[] source = readBytes(in);
+        return new Parser.Input(path, () -> new ByteArrayInputStream(source));
+    }
+
+    static void writeResponse(DataOutputStream out, Response response) throws IOException {
+        out.writeInt(VERSION);
+        out.writeInt(response.compilationUnits.size());
+        Java8LstCodec.Encoder encoder = new Java8LstCodec.Encoder(out);
+        for (J.CompilationUnit cu : response.compilationUnits) {
+            encoder.write(cu);
+        }
+        encoder.flush();
+        out.writeInt(response.errors.size());
+        for (String error : response.errors) {
+            writeString(out, error);
+        }
+        out.flush();
+    }
+
+    static Response readResponse(DataInputStream in) throws IOException {
+        checkVersion(in.readInt());
+        int cuCount = in.readInt();
+        List<J.CompilationUnit> cus = new ArrayList<>(cuCount);
+        Java8LstCodec.Decoder decoder = new Java8LstCodec.Decoder(in);
+        for (int i = 0; i < cuCount; i++) {
+            cus.add(decoder.read());
+        }
+        int errorCount = in.readInt();
+        List<String> errors = errorCount == 0 ? emptyList() : new ArrayList<>(errorCount);
+        for (int i = 0; i < errorCount; i++) {
+            errors.add(readString(in));
+        }
+        return new Response(cus, errors);
+    }
+
+    static String stackTrace(Throwable t) {
+        StringWriter stackTrace = new StringWriter();
+        t.printStackTrace(new PrintWriter(stackTrace));
+        return stackTrace.toString();
+    }
+
+    private static void checkVersion(int version) {
+        if (version != VERSION) {
+            throw new IllegalStateException("Expected Java8Parser protocol version " + VERSION + " but was " + version);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Unlike {@link DataOutputStream#writeUTF(String)}, not limited to 64KB, which some source files exceed.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        writeBytes(out, s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullableString(DataOutputStream out, @Nullable String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            writeString(out, s);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+}
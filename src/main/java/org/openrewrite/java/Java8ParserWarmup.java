@@ -0,0 +1,132 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.internal.StringUtils;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The outcome of warming up a parser's compiler and LST mapping code paths with a bundled synthetic
+ * corpus, so that the JIT has compiled them before the first real request is parsed.
+ */
+public final class Java8ParserWarmup {
+    private static final List<String> CORPUS = Arrays.asList("WarmupStatements.java", "WarmupDeclarations.java");
+
+    /**
+     * The number of most recent iterations whose durations are compared to decide that throughput is stable.
+     */
+    private static final int WINDOW = 5;
+
+    /**
+     * Throughput is considered stable when the durations in the window vary by no more than this fraction of
+     * their mean.
+     */
+    private static final double TOLERANCE = 0.05;
+
+    private final int iterations;
+    private final boolean stabilized;
+    private final double filesPerSecond;
+
+    private Java8ParserWarmup(int iterations, boolean stabilized, double filesPerSecond) {
+        this.iterations = iterations;
+        this.stabilized = stabilized;
+        this.filesPerSecond = filesPerSecond;
+    }
+
+    /**
+     * @return The number of times the corpus was parsed.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return Whether throughput stabilized before the maximum number of iterations was reached.
+     */
+    public boolean isStabilized() {
+        return stabilized;
+    }
+
+    /**
+     * @return Throughput over the most recent iterations.
+     */
+    public double getFilesPerSecond() {
+        return filesPerSecond;
+    }
+
+    static Java8ParserWarmup run(JavaParser parser, int maxIterations) {
+        String[] corpus = corpus();
+
+        List<Long> durations = new ArrayList<>(maxIterations);
+        for (int i = 0; i < maxIterations; i++) {
+            long start = System.nanoTime();
+            parser.parse(new InMemoryExecutionContext(), corpus);
+            durations.add(System.nanoTime() - start);
+
+            // the corpus declares the same types on every iteration
+            parser.reset();
+
+            if (isStable(durations)) {
+                return new Java8ParserWarmup(i + 1, true, filesPerSecond(durations, corpus.length));
+            }
+        }
+
+        return new Java8ParserWarmup(maxIterations, false, filesPerSecond(durations, corpus.length));
+    }
+
+    private static boolean isStable(List<Long> durations) {
+        if (durations.size() < WINDOW) {
+            return false;
+        }
+
+        List<Long> window = durations.subList(durations.size() - WINDOW, durations.size());
+        double mean = window.stream().mapToLong(Long::longValue).average().orElse(0);
+        double variance = window.stream().mapToDouble(d -> (d - mean) * (d - mean)).sum() / WINDOW;
+        return Math.sqrt(variance) <= TOLERANCE * mean;
+    }
+
+    private static double filesPerSecond(List<Long> durations, int files) {
+        List<Long> window = durations.subList(Math.max(0, durations.size() - WINDOW), durations.size());
+        long nanos = window.stream().mapToLong(Long::longValue).sum();
+        return nanos == 0 ? 0 : files * window.size() * 1e9 / nanos;
+    }
+
+    private static String[] corpus() {
+        String[] sources = new String[CORPUS.size()];
+        for (int i = 0; i < CORPUS.size(); i++) {
+            InputStream source = Java8ParserWarmup.class.getResourceAsStream("warmup/" + CORPUS.get(i));
+            if (source == null) {
+                throw new IllegalStateException("Unable to find warm-up source " + CORPUS.get(i));
+            }
+            sources[i] = StringUtils.readFully(source);
+        }
+        return sources;
+    }
+
+    @Override
+    public String toString() {
+        return "Java8ParserWarmup{" +
+                "iterations=" + iterations +
+                ", stabilized=" + stabilized +
+                ", filesPerSecond=" + filesPerSecond +
+                '}';
+    }
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.J;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Fans parsing out to a fixed number of child JVMs, each running its own {@link Java8Parser}, so that the heap
+ * javac needs for one batch can't take down the process that asked for it, and so that GC pauses in one worker
+ * don't stall the others.
+ * <p>
+ * Inputs are partitioned by directory, so that files in the same package are attributed together. Types declared
+ * in another partition are only resolved if they are also on the classpath.
+ * <p>
+ * A worker that dies while parsing is restarted and its partition is retried once. Workers are also recycled after
+ * a number of inputs, or when they find their heap occupancy after a batch above a threshold. With a
+ * {@link Builder#requestTimeout(Duration) request timeout}, a worker that takes longer than that on its partition is
+ * stopped and replaced, and the partition is reported as an error rather than retried.
+ * <p>
+ * Workers build their parsers with the classpath and compiler logging configured here, and otherwise with
+ * {@link Java8Parser.Builder} defaults. Styles and input policies are code that can't be sent to another process,
+ * so they aren't applied.
+ */
+public class Java8ParserWorkerPool implements JavaParser, Closeable {
+    private static final int EXIT_HEAP_EXHAUSTED = 3;
+
+    private final int workers;
+    private final int maxInputsPerWorker;
+    private final List<String> command;
+
+    @Nullable
+    private final Duration requestTimeout;
+
+    @Nullable
+    private Collection<Path> classpath;
+
+    private final BlockingQueue<Worker> idle;
+    private final ExecutorService dispatch;
+    private final ScheduledExecutorService deadlines;
+
+    /**
+     * Every live worker, whether idle or parsing, so that closing the pool can stop all of them.
+     */
+    private final Set<Worker> started = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    private Java8ParserWorkerPool(int workers, int maxInputsPerWorker, String maxHeap, double maxHeapOccupancy,
+                                  boolean logCompilationWarningsAndErrors, @Nullable Duration requestTimeout,
+                                  @Nullable Collection<Path> classpath) {
+        this.workers = workers;
+        this.maxInputsPerWorker = maxInputsPerWorker;
+        this.requestTimeout = requestTimeout;
+        this.command = Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx" + maxHeap,
+                "-cp", System.getProperty("java.class.path"),
+                Java8ParserWorkerPool.class.getName(),
+                Double.toString(maxHeapOccupancy),
+                Boolean.toString(logCompilationWarningsAndErrors));
+        this.classpath = classpath;
+        this.idle = new ArrayBlockingQueue<>(workers);
+        this.dispatch = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "rewrite-java-8-worker-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rewrite-java-8-worker-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The compilation units in the order of their inputs, regardless of how the inputs were partitioned.
+     */
+    @Override
+    public List<J.CompilationUnit> parseInputs(Iterable<Input> sourceFiles, @Nullable Path relativeTo, ExecutionContext ctx) {
+        Map<Path, Integer> order = new HashMap<>();
+        for (Input input : sourceFiles) {
+            order.putIfAbsent(input.getRelativePath(relativeTo), order.size());
+        }
+
+        List<List<Input>> partitions = partition(sourceFiles, workers);
+
+        List<Future<Java8ParserProtocol.Response>> responses = new ArrayList<>(partitions.size());
+        for (List<Input> partition : partitions) {
+            Java8ParserProtocol.Request request = new Java8ParserProtocol.Request(classpath, null, null,
+                    relativeTo, partition);
+            responses.add(dispatch.submit(() -> send(request)));
+        }
+
+        List<J.CompilationUnit> cus = new ArrayList<>();
+        for (Future<Java8ParserProtocol.Response> future : responses) {
+            try {
+                Java8ParserProtocol.Response response = future.get();
+                cus.addAll(response.compilationUnits);
+                for (String error : response.errors) {
+                    ctx.getOnError().accept(new JavaParsingException(error, null));
+                }
+            } catch (ExecutionException e) {
+                ctx.getOnError().accept(new JavaParsingException("Java8Parser worker failed", e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for Java8Parser workers", e);
+            }
+        }
+
+        cus.sort(Comparator.comparing(cu -> order.getOrDefault(cu.getSourcePath(), Integer.MAX_VALUE)));
+        return cus;
+    }
+
+    private Java8ParserProtocol.Response send(Java8ParserProtocol.Request request)
+            throws IOException, TimeoutException {
+        Worker worker = checkout();
+        try {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    return send(worker, request);
+                } catch (IOException e) {
+                    boolean timedOut = worker.timedOut;
+                    discard(worker);
+                    worker = start();
+                    if (timedOut) {
+                        // not retried, since a partition that took this long once would likely take as long again
+                        throw new TimeoutException("Java8Parser worker took longer than " + requestTimeout +
+                                " to parse " + request.inputs.size() + " inputs, and was stopped");
+                    } else if (attempt > 0) {
+                        throw e;
+                    }
+                    // the worker crashed or exited to shed heap, so try once more on a fresh one
+                }
+            }
+        } finally {
+            checkin(worker);
+        }
+    }
+
+    private Java8ParserProtocol.Response send(Worker worker, Java8ParserProtocol.Request request) throws IOException {
+        if (requestTimeout == null) {
+            return worker.send(request);
+        }
+
+        // stopping the worker ends the read of its response, which then fails
+        ScheduledFuture<?> deadline = deadlines.schedule(worker::timeOut, requestTimeout.toMillis(),
+                TimeUnit.MILLISECONDS);
+        try {
+            return worker.send(request);
+        } finally {
+            deadline.cancel(false);
+        }
+    }
+
+    private Worker checkout() throws IOException {
+        Worker worker = idle.poll();
+        return worker == null ? start() : worker;
+    }
+
+    private Worker start() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Java8Parser worker pool has been closed");
+        }
+        Worker worker = new Worker(command);
+        started.add(worker);
+        return worker;
+    }
+
+    private void checkin(Worker worker) {
+        if (closed || !worker.isAlive() || worker.timedOut || worker.inputsParsed >= maxInputsPerWorker ||
+                !idle.offer(worker)) {
+            discard(worker);
+        }
+    }
+
+    private void discard(Worker worker) {
+        worker.destroy();
+        started.remove(worker);
+    }
+
+    /**
+     * Keeps inputs from the same directory together and balances partitions by source count.
+     */
+    static List<List<Input>> partition(Iterable<Input> sourceFiles, int partitionCount) {
+        Map<Path, List<Input>> byDirectory = new LinkedHashMap<>();
+        for (Input input : sourceFiles) {
+            Path directory = input.getPath().toAbsolutePath().getParent();
+            byDirectory.computeIfAbsent(directory, d -> new ArrayList<>()).add(input);
+        }
+
+        List<List<Input>> groups = new ArrayList<>(byDirectory.values());
+        groups.sort((g1, g2) -> Integer.compare(g2.size(), g1.size()));
+
+        PriorityQueue<List<Input>> partitions = new PriorityQueue<>(
+                (p1, p2) -> Integer.compare(p1.size(), p2.size()));
+        for (int i = 0; i < Math.min(partitionCount, groups.size()); i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (List<Input> group : groups) {
+            List<Input> smallest = partitions.poll();
+            smallest.addAll(group);
+            partitions.add(smallest);
+        }
+        return new ArrayList<>(partitions);
+    }
+
+    @Override
+    public JavaParser reset() {
+        return this;
+    }
+
+    @Override
+    public void setClasspath(Collection<Path> classpath) {
+        this.classpath = classpath;
+    }
+
+    /**
+     * Stop every worker, including those still parsing, whose batches then fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatch.shutdownNow();
+        deadlines.shutdownNow();
+        idle.clear();
+        for (Worker worker : started) {
+            worker.destroy();
+        }
+        started.clear();
+    }
+
+    /**
+     * The entry point of each worker JVM. Requests are read from standard in and responses written to standard out,
+     * so anything else the parser prints is sent to standard error instead.
+     *
+     * @param args The heap occupancy, as a fraction of the maximum heap, above which the worker exits after a batch,
+     *             optionally followed by whether to log compilation warnings and errors.
+     */
+    public static void main(String[] args) throws IOException {
+        double maxHeapOccupancy = args.length > 0 ? Double.parseDouble(args[0]) : 0.75;
+        boolean logCompilationWarningsAndErrors = args.length > 1 && Boolean.parseBoolean(args[1]);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(System.in));
+
+        Java8Parser parser = null;
+        String parserClasspath = null;
+
+        while (true) {
+            Java8ParserProtocol.Request request;
+            try {
+                request = Java8ParserProtocol.readRequest(in);
+            } catch (EOFException e) {
+                return;
+            }
+
+            // a failure is reported as the response to its request rather than taking the worker down, which the pool
+            // would mistake for a crash and retry on a fresh worker only to fail in the same way
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            try {
+                String requestClasspath = Java8ParserDaemon.fingerprint(request);
+                if (parser == null || !requestClasspath.equals(parserClasspath)) {
+                    parser = Java8ParserDaemon.builder(request)
+                            .logCompilationWarningsAndErrors(logCompilationWarningsAndErrors)
+                            .build();
+                    parserClasspath = requestClasspath;
+                }
+
+                List<String> errors = new ArrayList<>();
+                ExecutionContext ctx = new InMemoryExecutionContext(t -> errors.add(Java8ParserProtocol.stackTrace(t)));
+                List<J.CompilationUnit> cus = parser.parseInputs(request.inputs, request.relativeTo, ctx);
+                parser.reset();
+                Java8ParserProtocol.writeResponse(new DataOutputStream(response),
+                        new Java8ParserProtocol.Response(cus, errors));
+            } catch (Throwable t) {
+                // compiler state can't be trusted after a failure, so the next request gets a fresh parser
+                parser = null;
+                response.reset();
+                Java8ParserProtocol.writeResponse(new DataOutputStream(response), new Java8ParserProtocol.Response(
+                        Collections.emptyList(), Collections.singletonList(Java8ParserProtocol.stackTrace(t))));
+            }
+            response.writeTo(out);
+            out.flush();
+
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            if (heap.getMax() > 0 && heap.getUsed() > heap.getMax() * maxHeapOccupancy) {
+                System.gc();
+                heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+                if (heap.getUsed() > heap.getMax() * maxHeapOccupancy) {
+                    System.exit(EXIT_HEAP_EXHAUSTED);
+                }
+            }
+        }
+    }
+
+    private static class Worker {
+        private final Process process;
+        private final DataOutputStream in;
+        private final DataInputStream out;
+        private int inputsParsed;
+        private volatile boolean timedOut;
+
+        Worker(List<String> command) throws IOException {
+            this.process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            this.in = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.out = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        }
+
+        Java8ParserProtocol.Response send(Java8ParserProtocol.Request request) throws IOException {
+            Java8ParserProtocol.writeRequest(in, request);
+            Java8ParserProtocol.Response response = Java8ParserProtocol.readResponse(out);
+            inputsParsed += request.inputs.size();
+            return response;
+        }
+
+        boolean isAlive() {
+            try {
+                process.exitValue();
+                return false;
+            } catch (IllegalThreadStateException e) {
+                return true;
+            }
+        }
+
+        void timeOut() {
+            timedOut = true;
+            process.destroy();
+        }
+
+        void destroy() {
+            process.destroy();
+        }
+    }
+
+    public static class Builder {
+        private int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private int maxInputsPerWorker = 10_000;
+        private String maxHeap = "1g";
+        private double maxHeapOccupancy = 0.75;
+        private boolean logCompilationWarningsAndErrors;
+
+        @Nullable
+        private Duration requestTimeout;
+
+        @Nullable
+        private Collection<Path> classpath;
+
+        public Builder workers(int workers) {
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * @param maxInputsPerWorker The number of inputs a worker parses before it is replaced with a fresh JVM.
+         */
+        public Builder maxInputsPerWorker(int maxInputsPerWorker) {
+            this.maxInputsPerWorker = maxInputsPerWorker;
+            return this;
+        }
+
+        /**
+         * @param maxHeap The maximum heap of each worker JVM, in the form accepted by {@code -Xmx}.
+         */
+        public Builder maxHeap(String maxHeap) {
+            this.maxHeap = maxHeap;
+            return this;
+        }
+
+        /**
+         * @param maxHeapOccupancy The fraction of the maximum heap still in use after a batch (and a full GC) above
+         *                         which a worker exits and is replaced.
+         */
+        public Builder maxHeapOccupancy(double maxHeapOccupancy) {
+            this.maxHeapOccupancy = maxHeapOccupancy;
+            return this;
+        }
+
+        public Builder logCompilationWarningsAndErrors(boolean logCompilationWarningsAndErrors) {
+            this.logCompilationWarningsAndErrors = logCompilationWarningsAndErrors;
+            return this;
+        }
+
+        /**
+         * @param requestTimeout How long a worker may take to parse its partition of a batch, including starting
+         *                       its JVM, before it is stopped and replaced with a fresh one. The partition is then
+         *                       reported as an error. By default, there is no limit.
+         */
+        public Builder requestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        public Builder classpath(Collection<Path> classpath) {
+            this.classpath = classpath;
+            return this;
+        }
+
+        public Java8ParserWorkerPool build() {
+            return new Java8ParserWorkerPool(workers, maxInputsPerWorker, maxHeap, maxHeapOccupancy,
+                    logCompilationWarningsAndErrors, requestTimeout, classpath);
+        }
+    }
+}
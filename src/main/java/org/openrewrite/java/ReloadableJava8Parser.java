@@ -15,15 +15,27 @@
  */
 package org.openrewrite.java;
 
+import com.sun.tools.javac.api.JavacTool;
+import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Kinds;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Symtab;
+import com.sun.tools.javac.code.Type;
+import com.sun.tools.javac.code.TypeTag;
 import com.sun.tools.javac.comp.*;
 import com.sun.tools.javac.file.JavacFileManager;
 import com.sun.tools.javac.main.JavaCompiler;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Names;
 import com.sun.tools.javac.util.Options;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Opcodes;
@@ -39,16 +51,33 @@ import org.openrewrite.java.tree.Space;
 
 import javax.tools.*;
 import java.io.*;
+import java.lang.reflect.Field;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
 import static java.util.stream.Collectors.toList;
 
 class ReloadableJava8Parser implements JavaParser {
@@ -66,28 +95,98 @@ class ReloadableJava8Parser implements JavaParser {
      */
     private final boolean relaxedClassTypeMatching;
 
-    private final JavacFileManager pfm;
+    private final Charset charset;
+    private final boolean logCompilationWarningsAndErrors;
 
-    private final Context context;
-    private final JavaCompiler compiler;
-    private final ResettableLog compilerLog;
+    private final List<PackageAwareJavaFileObject> classByteClasspath;
+    private final Java8Parser.ClassBytesStorage classBytesStorage;
+    private final List<InMemoryJar> jarClasspath;
+
+    /**
+     * The class files compiled from {@link #dependsOn} when this parser is first forked, shared by every fork
+     * and kept wherever {@link #classBytesStorage} keeps the rest of the class-bytes classpath.
+     */
+    @Nullable
+    private List<PackageAwareJavaFileObject> forkedDependencies;
+    private boolean dependenciesCompiledForForks;
+
+    private JavacFileManager pfm;
+
+    private Context context;
+    private JavaCompiler compiler;
+    private ResettableLog compilerLog;
     private final Collection<NamedStyles> styles;
 
+    @Nullable
+    private Java8ParserInputPolicy inputPolicy;
+
+    @Nullable
+    private Duration fileTimeout;
+
+    @Nullable
+    private Duration batchTimeout;
+
+    private BooleanSupplier cancellation = () -> false;
+
+    private int reportedAttributions;
+
+    /**
+     * Created on the first parse that is recorded, so that the registry is known by then, and nothing is
+     * registered with the global registry when another one is configured.
+     */
+    @Nullable
+    private Meters meters;
+
+    /**
+     * Whether parsing is recorded to meters, flight recorder events and attribution timings, which it isn't
+     * while warming up.
+     */
+    private boolean recording = true;
+
     ReloadableJava8Parser(@Nullable Collection<Path> classpath,
                           Collection<byte[]> classBytesClasspath,
+                          Java8Parser.ClassBytesStorage classBytesStorage,
+                          Collection<ByteBuffer> jarClasspath,
                           @Nullable Collection<Input> dependsOn,
                           Charset charset,
                           boolean relaxedClassTypeMatching,
                           boolean logCompilationWarningsAndErrors,
                           Collection<NamedStyles> styles) {
+        this(classpath, ByteArrayCapableJavacFileManager.store(classBytesClasspath, classBytesStorage), classBytesStorage,
+                jarClasspath.stream().map(InMemoryJar::new).collect(toList()), dependsOn, charset,
+                relaxedClassTypeMatching, logCompilationWarningsAndErrors, styles);
+    }
+
+    private ReloadableJava8Parser(@Nullable Collection<Path> classpath,
+                                  List<PackageAwareJavaFileObject> classByteClasspath,
+                                  Java8Parser.ClassBytesStorage classBytesStorage,
+                                  List<InMemoryJar> jarClasspath,
+                                  @Nullable Collection<Input> dependsOn,
+                                  Charset charset,
+                                  boolean relaxedClassTypeMatching,
+                                  boolean logCompilationWarningsAndErrors,
+                                  Collection<NamedStyles> styles) {
         this.classpath = classpath;
         this.dependsOn = dependsOn;
         this.relaxedClassTypeMatching = relaxedClassTypeMatching;
         this.styles = styles;
+        this.charset = charset;
+        this.logCompilationWarningsAndErrors = logCompilationWarningsAndErrors;
+        this.classByteClasspath = classByteClasspath;
+        this.classBytesStorage = classBytesStorage;
+        this.jarClasspath = jarClasspath;
 
+        initCompiler();
+        compileDependencies();
+    }
+
+    /**
+     * Fresh compiler state, with no symbols entered or completed.
+     */
+    private void initCompiler() {
         this.context = new Context();
         this.compilerLog = new ResettableLog(context);
-        this.pfm = new ByteArrayCapableJavacFileManager(context, true, charset, classBytesClasspath);
+        this.pfm = new ByteArrayCapableJavacFileManager(context, true, charset, classByteClasspath, jarClasspath);
         context.put(JavaFileManager.class, this.pfm);
 
         // otherwise, consecutive string literals in binary expressions are concatenated by the parser, losing the original
@@ -130,12 +229,20 @@ class ReloadableJava8Parser implements JavaParser {
             public void close() {
             }
         }));
-
-        compileDependencies();
     }
 
     @Override
     public List<J.CompilationUnit> parseInputs(Iterable<Input> sourceFiles, @Nullable Path relativeTo, ExecutionContext ctx) {
+        return parseInputs(sourceFiles, relativeTo, ctx, new ArrayList<>());
+    }
+
+    /**
+     * Add each compilation unit to {@code cus} as soon as it is mapped, rather than collecting them all first.
+     */
+    List<J.CompilationUnit> parseInputs(Iterable<Input> sourceFiles, @Nullable Path relativeTo, ExecutionContext ctx,
+                                        List<J.CompilationUnit> cus) {
+        Meters meters = recording ? meters() : Meters.NOOP;
+
         if (classpath != null) { // override classpath
             if (context.get(JavaFileManager.class) != pfm) {
                 throw new IllegalStateException("JavaFileManager has been forked unexpectedly");
@@ -148,57 +255,112 @@ class ReloadableJava8Parser implements JavaParser {
             }
         }
 
-        LinkedHashMap<Input, JCTree.JCCompilationUnit> cus = acceptedInputs(sourceFiles).stream()
+        long parseStart = System.nanoTime();
+        LinkedHashMap<Input, JCTree.JCCompilationUnit> jcCus = acceptedInputs(sourceFiles).stream()
                 .collect(Collectors.toMap(
                         Function.identity(),
-                        input -> MetricsHelper.successTags(
-                                Timer.builder("rewrite.parse")
-                                        .description("The time spent by the JDK in parsing and tokenizing the source file")
-                                        .tag("file.type", "Java")
-                                        .tag("step", "(1) JDK parsing"))
-                                .register(Metrics.globalRegistry)
-                                .record(() -> {
-                                    try {
-                                        return compiler.parse(new Java8ParserInputFileObject(input));
-                                    } catch (IllegalStateException e) {
-                                        if (e.getMessage().equals("endPosTable already set")) {
-                                            throw new IllegalStateException("Call reset() on JavaParser before parsing another" +
-                                                    "set of source files that have some of the same fully qualified names", e);
-                                        }
-                                        throw e;
-                                    }
-                                }),
+                        input -> meters.jdkParsing.record(() -> {
+                            try {
+                                Object event = recording ? Java8ParserEvents.beginJdkParse() : null;
+                                JCTree.JCCompilationUnit jcCu = compiler.parse(new Java8ParserInputFileObject(input));
+                                if (Java8ParserEvents.shouldCommit(event)) {
+                                    Java8ParserEvents.commitJdkParse(event, input.getPath().toString(), sizeOf(input));
+                                }
+                                return jcCu;
+                            } catch (IllegalStateException e) {
+                                if (e.getMessage().equals("endPosTable already set")) {
+                                    throw new IllegalStateException("Call reset() on JavaParser before parsing another" +
+                                            "set of source files that have some of the same fully qualified names", e);
+                                }
+                                throw e;
+                            }
+                        }),
                         (e2, e1) -> e1, LinkedHashMap::new));
 
+        Map<Input, Java8ParserInputPolicy.Action> actions = inputActions(jcCus.keySet(), relativeTo);
+        Set<JCTree.JCCompilationUnit> unattributed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Input input : actions.keySet()) {
+            unattributed.add(jcCus.get(input));
+        }
+
+        long batchStart = System.nanoTime();
+        Duration fileTimeout = this.fileTimeout;
+        Duration batchTimeout = this.batchTimeout;
+        BooleanSupplier batchStopped = () -> cancellation.getAsBoolean() ||
+                (batchTimeout != null && System.nanoTime() - batchStart > batchTimeout.toNanos());
+
         try {
-            enterAll(cus.values());
-            compiler.attribute(new TimedTodo(compiler.todo));
+            enterAll(jcCus.values());
         } catch (Throwable t) {
             // when symbol entering fails on problems like missing types, attribution can often times proceed
             // unhindered, but it sometimes cannot (so attribution is always a BEST EFFORT in the presence of errors)
-            ctx.getOnError().accept(new JavaParsingException("Failed symbol entering or attribution", t));
+            ctx.getOnError().accept(new JavaParsingException("Failed symbol entering", t));
+            enterRemaining(jcCus.values(), ctx);
+        }
+
+        // attribute one environment (top-level class) at a time, so that a failure costs only the types of the
+        // class that caused it, rather than those of every class attributed after it
+        TimedTodo todo = new TimedTodo(compiler.todo, unattributed, fileTimeout, batchStopped,
+                toplevel -> ctx.getOnError().accept(new JavaParsingException(
+                        stopped("Attribution of " + toplevel.sourcefile.getName()), null)),
+                recording && reportedAttributions > 0, recording, meters.attribution);
+        while (!todo.isEmpty()) {
+            Env<AttrContext> env = todo.remove();
+            try {
+                compiler.attribute(env);
+            } catch (Throwable t) {
+                ctx.getOnError().accept(new JavaParsingException("Failed attribution of " + env.enclClass.name +
+                        " in " + env.toplevel.sourcefile.getName(), t));
+            }
         }
+        recordAttributionTimings(ctx, todo);
 
         Map<String, JavaType.Class> sharedClassTypes = new HashMap<>();
-        return cus.entrySet().stream()
+        jcCus.entrySet().stream()
+                .filter(cuByPath -> {
+                    if (actions.get(cuByPath.getKey()) == Java8ParserInputPolicy.Action.SKIP) {
+                        recordSkipped(ctx, cuByPath.getKey().getRelativePath(relativeTo));
+                        return false;
+                    }
+                    return true;
+                })
                 .map(cuByPath -> {
-                    Timer.Sample sample = Timer.start();
                     Input input = cuByPath.getKey();
+                    if (batchStopped.getAsBoolean()) {
+                        ctx.getOnError().accept(new JavaParsingException(
+                                stopped("Mapping " + input.getRelativePath(relativeTo)), null));
+                        return null;
+                    }
+
+                    long fileStart = System.nanoTime();
+                    BooleanSupplier stop = fileTimeout == null ? batchStopped : () -> batchStopped.getAsBoolean() ||
+                            System.nanoTime() - fileStart > fileTimeout.toNanos();
+
+                    Timer.Sample sample = Timer.start();
+                    Object event = recording ? Java8ParserEvents.beginMapping() : null;
                     try {
+                        String source = StringUtils.readFully(input.getSource());
                         ReloadableJava8ParserVisitor parser = new ReloadableJava8ParserVisitor(
                                 input.getRelativePath(relativeTo),
-                                StringUtils.readFully(input.getSource()),
+                                source,
                                 relaxedClassTypeMatching,
                                 styles,
                                 sharedClassTypes,
-                                ctx);
+                                ctx,
+                                stop);
+                        parser.setRecordEvents(recording);
                         J.CompilationUnit cu = (J.CompilationUnit) parser.scan(cuByPath.getValue(), Space.EMPTY);
-                        sample.stop(MetricsHelper.successTags(
-                                Timer.builder("rewrite.parse")
-                                        .description("The time spent mapping the OpenJDK AST to Rewrite's AST")
-                                        .tag("file.type", "Java")
-                                        .tag("step", "(3) Map to Rewrite AST"))
-                                .register(Metrics.globalRegistry));
+                        sample.stop(meters.mapping);
+
+                        long bytes = utf8Length(source);
+                        if (Java8ParserEvents.shouldCommit(event)) {
+                            Java8ParserEvents.commitMapping(event, input.getPath().toString(), bytes,
+                                    parser.getConversions());
+                        }
+                        meters.files.increment();
+                        meters.bytes.record(bytes);
+                        meters.lines.record(lines(source));
+                        meters.nodes.record(parser.getConversions());
                         return cu;
                     } catch (Throwable t) {
                         sample.stop(MetricsHelper.errorTags(
@@ -206,14 +368,150 @@ class ReloadableJava8Parser implements JavaParser {
                                         .description("The time spent mapping the OpenJDK AST to Rewrite's AST")
                                         .tag("file.type", "Java")
                                         .tag("step", "(3) Map to Rewrite AST"), t)
-                                .register(Metrics.globalRegistry));
+                                .register(meters.registry));
 
-                        ctx.getOnError().accept(t);
+                        ctx.getOnError().accept(t instanceof ReloadableJava8ParserVisitor.MappingStoppedException ?
+                                new JavaParsingException(stopped("Mapping " + input.getRelativePath(relativeTo)), t) :
+                                t);
                         return null;
                     }
                 })
                 .filter(Objects::nonNull)
-                .collect(toList());
+                .forEach(cus::add);
+
+        meters.types.increment(sharedClassTypes.size());
+        long parseNanos = System.nanoTime() - parseStart;
+        if (parseNanos > 0 && !jcCus.isEmpty()) {
+            meters.filesPerSecond.record(jcCus.size() * 1e9 / parseNanos);
+        }
+        return cus;
+    }
+
+    void setInputPolicy(@Nullable Java8ParserInputPolicy inputPolicy) {
+        this.inputPolicy = inputPolicy;
+    }
+
+    void setLimits(@Nullable Duration fileTimeout, @Nullable Duration batchTimeout,
+                   @Nullable BooleanSupplier cancellation) {
+        this.fileTimeout = fileTimeout;
+        this.batchTimeout = batchTimeout;
+        this.cancellation = cancellation == null ? () -> false : cancellation;
+    }
+
+    void setMeterRegistry(MeterRegistry registry) {
+        this.meters = new Meters(registry);
+    }
+
+    private Meters meters() {
+        if (meters == null) {
+            meters = new Meters(Metrics.globalRegistry);
+        }
+        return meters;
+    }
+
+    void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    void setReportedAttributions(int reportedAttributions) {
+        this.reportedAttributions = reportedAttributions;
+    }
+
+    private String stopped(String work) {
+        return work + (cancellation.getAsBoolean() ? " was cancelled" : " exceeded its deadline");
+    }
+
+    /**
+     * @return The inputs the input policy doesn't want to be parsed in full, and what to do with them instead.
+     */
+    private Map<Input, Java8ParserInputPolicy.Action> inputActions(Collection<Input> inputs, @Nullable Path relativeTo) {
+        if (inputPolicy == null) {
+            return emptyMap();
+        }
+
+        Map<Input, Java8ParserInputPolicy.Action> actions = new HashMap<>();
+        for (Input input : inputs) {
+            Java8ParserInputPolicy.Action action = inputPolicy.actionFor(input.getRelativePath(relativeTo),
+                    () -> StringUtils.readFully(input.getSource()));
+            if (action != Java8ParserInputPolicy.Action.PARSE) {
+                actions.put(input, action);
+            }
+        }
+        return actions;
+    }
+
+    /**
+     * Only called when a flight recording needs it, since it reads the input again.
+     */
+    private static long sizeOf(Input input) {
+        long size = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream source = input.getSource()) {
+            for (int n = source.read(buffer); n >= 0; n = source.read(buffer)) {
+                size += n;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return size;
+    }
+
+    private static long utf8Length(String source) {
+        long length = 0;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                // with its low surrogate, a code point of four bytes
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static long lines(String source) {
+        long lines = 1;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static String className(Env<AttrContext> env) {
+        return env.enclClass.sym == null ? env.enclClass.name.toString() : env.enclClass.sym.flatName().toString();
+    }
+
+    private void recordAttributionTimings(ExecutionContext ctx, TimedTodo todo) {
+        if (todo.classNanos == null) {
+            return;
+        }
+
+        Java8ParserAttributionTimings timings = ctx.getMessage(Java8ParserAttributionTimings.ATTRIBUTION_TIMINGS);
+        if (timings == null) {
+            timings = new Java8ParserAttributionTimings(reportedAttributions);
+            ctx.putMessage(Java8ParserAttributionTimings.ATTRIBUTION_TIMINGS, timings);
+        }
+        for (Map.Entry<Env<AttrContext>, Long> classNanos : todo.classNanos.entrySet()) {
+            Env<AttrContext> env = classNanos.getKey();
+            timings.record(className(env), env.toplevel.sourcefile.getName(), classNanos.getValue());
+        }
+    }
+
+    private static void recordSkipped(ExecutionContext ctx, Path path) {
+        Set<Path> skipped = ctx.getMessage(Java8ParserInputPolicy.SKIPPED_INPUTS);
+        if (skipped == null) {
+            skipped = new LinkedHashSet<>();
+            ctx.putMessage(Java8ParserInputPolicy.SKIPPED_INPUTS, skipped);
+        }
+        skipped.add(path);
     }
 
     @Override
@@ -221,21 +519,368 @@ class ReloadableJava8Parser implements JavaParser {
         compilerLog.reset();
         pfm.flush();
         Check.instance(context).compiled.clear();
+        jarClasspath.forEach(InMemoryJar::release);
         return this;
     }
 
+    /**
+     * Close the archives of classpath entries, and delete the temporary copies of in-memory jars that couldn't be
+     * read in place. Either is opened again if this parser, or a fork sharing its jars, reads from it afterwards.
+     */
+    void close() {
+        pfm.close();
+        jarClasspath.forEach(InMemoryJar::close);
+    }
+
     @Override
     public void setClasspath(Collection<Path> classpath) {
         this.classpath = classpath;
     }
 
+    /**
+     * A new parser with fresh compiler state that shares everything immutable with this one: the classpath,
+     * class bytes that have already been read and laid out, in-memory jars that have already been indexed,
+     * and the class files compiled from {@link #dependsOn}. Dependencies are compiled to class files on the
+     * first fork, so forks don't need to parse and attribute them again.
+     */
+    public synchronized ReloadableJava8Parser fork() {
+        if (dependsOn != null && !dependenciesCompiledForForks) {
+            List<byte[]> compiled = compileToClassBytes(dependsOn, classpath, classByteClasspath, jarClasspath, charset);
+            if (compiled != null) {
+                forkedDependencies = ByteArrayCapableJavacFileManager.store(compiled, classBytesStorage);
+            }
+            dependenciesCompiledForForks = true;
+        }
+
+        List<PackageAwareJavaFileObject> forkClassByteClasspath = classByteClasspath;
+        Collection<Input> forkDependsOn = dependsOn;
+        if (forkedDependencies != null) {
+            forkClassByteClasspath = new ArrayList<>(classByteClasspath);
+            forkClassByteClasspath.addAll(forkedDependencies);
+            forkDependsOn = null;
+        }
+
+        ReloadableJava8Parser fork = new ReloadableJava8Parser(classpath == null ? null : new ArrayList<>(classpath),
+                forkClassByteClasspath, classBytesStorage, jarClasspath, forkDependsOn, charset, relaxedClassTypeMatching,
+                logCompilationWarningsAndErrors, styles);
+        fork.inputPolicy = inputPolicy;
+        fork.setLimits(fileTimeout, batchTimeout, cancellation);
+        fork.reportedAttributions = reportedAttributions;
+        fork.meters = meters;
+        return fork;
+    }
+
+    /**
+     * Add a single entry to the classpath of this parser, so types are resolved against the updated classpath
+     * from the next parse on. Like parsing, this must not be called while another thread is using this parser;
+     * it is only synchronized with {@link #fork()}, which may be called from any thread.
+     */
+    public synchronized void addClasspathEntry(Path entry) {
+        List<Path> updated = new ArrayList<>(currentClasspath());
+        if (!updated.contains(entry)) {
+            updated.add(entry);
+            updateClasspath(updated, entry, false);
+        }
+    }
+
+    /**
+     * Remove a single entry from the classpath of this parser, so types that were only on the removed entry are
+     * missing from the next parse on. Like parsing, this must not be called while another thread is using this
+     * parser; it is only synchronized with {@link #fork()}, which may be called from any thread.
+     */
+    public synchronized void removeClasspathEntry(Path entry) {
+        List<Path> updated = new ArrayList<>(currentClasspath());
+        if (updated.remove(entry)) {
+            updateClasspath(updated, entry, true);
+        }
+    }
+
+    private Collection<Path> currentClasspath() {
+        if (classpath != null) {
+            return classpath;
+        }
+
+        List<Path> defaultClasspath = new ArrayList<>();
+        Iterable<? extends File> location = pfm.getLocation(StandardLocation.CLASS_PATH);
+        if (location != null) {
+            for (File file : location) {
+                defaultClasspath.add(file.toPath());
+            }
+        }
+        return defaultClasspath;
+    }
+
+    private void updateClasspath(Collection<Path> updated, Path changedEntry, boolean removed) {
+        this.classpath = updated;
+
+        try {
+            pfm.setLocation(StandardLocation.CLASS_PATH, updated.stream().map(Path::toFile).collect(toList()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (removed) {
+            closeArchive(changedEntry);
+        }
+        invalidateSymbols(changedEntry, removed);
+
+        // class files compiled for forks were attributed against the old classpath
+        forkedDependencies = null;
+        dependenciesCompiledForForks = false;
+    }
+
+    /**
+     * Symbols that javac has already completed hold on to the members, supertypes and signatures that were read
+     * from the old classpath. Only the class symbols that were read from a removed entry, and those that failed
+     * to complete because their class file was missing, are reset in place to be completed again on next use,
+     * so references to them held by other symbols see the change. Their packages, and the packages an added
+     * entry contributes to, are re-listed on next use. Everything else stays completed. Compilation units that
+     * were already attributed, such as {@link #dependsOn}, keep the types they were attributed with.
+     */
+    private void invalidateSymbols(Path changedEntry, boolean removed) {
+        Symtab symtab = Symtab.instance(context);
+        Symbol.Completer completer = classReaderCompleter();
+
+        Set<Symbol.PackageSymbol> relist = new HashSet<>();
+        if (!removed) {
+            Names names = Names.instance(context);
+            for (String packageName : packagesIn(changedEntry)) {
+                Symbol.PackageSymbol pkg = symtab.packages.get(names.fromString(packageName));
+                if (pkg != null) {
+                    relist.add(pkg);
+                }
+            }
+        }
+
+        for (Symbol.ClassSymbol clazz : new ArrayList<>(symtab.classes.values())) {
+            boolean failed = clazz.type.hasTag(TypeTag.ERROR);
+            if (failed || (removed && clazz.classfile != null && isFromEntry(clazz.classfile, changedEntry))) {
+                clazz.members_field = null;
+                clazz.completer = completer;
+                clazz.classfile = null;
+                clazz.flags_field = 0;
+                clazz.erasure_field = null;
+                if (failed) {
+                    // a failed completion turns the symbol into an error, which is undone for it to complete again
+                    clazz.type = new Type.ClassType(Type.noType, null, clazz);
+                    clazz.kind = Kinds.TYP;
+                } else {
+                    Type.ClassType type = (Type.ClassType) clazz.type;
+                    type.supertype_field = null;
+                    type.interfaces_field = null;
+                    type.typarams_field = null;
+                    type.allparams_field = null;
+                    type.all_interfaces_field = null;
+                }
+
+                Symbol.PackageSymbol pkg = clazz.packge();
+                if (pkg.members_field != null) {
+                    pkg.members_field.remove(clazz);
+                }
+                relist.add(pkg);
+            }
+        }
+
+        for (Symbol.PackageSymbol pkg : relist) {
+            // classes entered from sources stay members of the package, and keep it existing
+            if (pkg.members_field != null && pkg.members_field.elems == null) {
+                pkg.flags_field &= ~Flags.EXISTS;
+            }
+            pkg.completer = completer;
+        }
+    }
+
+    /**
+     * The completer the class reader attaches to every class and package it enters.
+     */
+    private Symbol.Completer classReaderCompleter() {
+        try {
+            Field thisCompleter = com.sun.tools.javac.jvm.ClassReader.class.getDeclaredField("thisCompleter");
+            thisCompleter.setAccessible(true);
+            return (Symbol.Completer) thisCompleter.get(com.sun.tools.javac.jvm.ClassReader.instance(context));
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to invalidate symbols of a changed classpath entry", e);
+        }
+    }
+
+    /**
+     * The file manager keeps each jar it has read open and indexed, so a jar that is rebuilt at the same path
+     * after being removed would otherwise be read from its old index when it is added again.
+     */
+    private void closeArchive(Path entry) {
+        try {
+            Field archivesField = JavacFileManager.class.getDeclaredField("archives");
+            archivesField.setAccessible(true);
+            @SuppressWarnings("unchecked") Map<File, JavacFileManager.Archive> archives =
+                    (Map<File, JavacFileManager.Archive>) archivesField.get(pfm);
+            for (Iterator<Map.Entry<File, JavacFileManager.Archive>> it = archives.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<File, JavacFileManager.Archive> archive = it.next();
+                if (archive.getKey().toPath().toAbsolutePath().equals(entry.toAbsolutePath())) {
+                    it.remove();
+                    archive.getValue().close();
+                }
+            }
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to close the archive of a removed classpath entry", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Set<String> packagesIn(Path entry) {
+        Set<String> packageNames = new HashSet<>();
+        try {
+            if (Files.isDirectory(entry)) {
+                try (Stream<Path> files = Files.walk(entry)) {
+                    files.filter(f -> f.toString().endsWith(".class"))
+                            .map(f -> entry.relativize(f.getParent()))
+                            .forEach(dir -> packageNames.add(dir.toString().replace(File.separatorChar, '.')));
+                }
+            } else if (Files.isRegularFile(entry)) {
+                try (ZipFile jar = new ZipFile(entry.toFile())) {
+                    Enumeration<? extends ZipEntry> entries = jar.entries();
+                    while (entries.hasMoreElements()) {
+                        String name = entries.nextElement().getName();
+                        if (name.endsWith(".class")) {
+                            int lastSlash = name.lastIndexOf('/');
+                            packageNames.add(lastSlash < 0 ? "" : name.substring(0, lastSlash).replace('/', '.'));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return packageNames;
+    }
+
+    /**
+     * Classes read from class bytes or in-memory jars aren't on any classpath entry.
+     */
+    private static boolean isFromEntry(JavaFileObject classfile, Path entry) {
+        URI uri = classfile.toUri();
+        if ("jar".equals(uri.getScheme())) {
+            String archive = uri.getRawSchemeSpecificPart();
+            int separator = archive.indexOf("!/");
+            return separator > 0 && Paths.get(URI.create(archive.substring(0, separator))).equals(entry.toAbsolutePath());
+        }
+        return "file".equals(uri.getScheme()) && Paths.get(uri).startsWith(entry.toAbsolutePath());
+    }
+
+    /**
+     * Compile sources all the way to class files with javac's back end, so that they can be supplied to other
+     * parsers as class bytes rather than being parsed and attributed again by each of them.
+     *
+     * @return The class files produced, or {@code null} if the sources don't compile cleanly.
+     */
+    @Nullable
+    static List<byte[]> compileToClassBytes(Collection<Input> sources,
+                                            @Nullable Collection<Path> classpath,
+                                            Collection<byte[]> classBytesClasspath,
+                                            Collection<ByteBuffer> jarClasspath,
+                                            Charset charset) {
+        List<InMemoryJar> jars = jarClasspath.stream().map(InMemoryJar::new).collect(toList());
+        try {
+            return compileToClassBytes(sources, classpath,
+                    ByteArrayCapableJavacFileManager.store(classBytesClasspath, Java8Parser.ClassBytesStorage.HEAP),
+                    jars, charset);
+        } finally {
+            jars.forEach(InMemoryJar::close);
+        }
+    }
+
+    @Nullable
+    private static List<byte[]> compileToClassBytes(Collection<Input> sources,
+                                                    @Nullable Collection<Path> classpath,
+                                                    List<PackageAwareJavaFileObject> classBytesClasspath,
+                                                    List<InMemoryJar> jarClasspath,
+                                                    Charset charset) {
+        JavacFileManager fileManager = new ByteArrayCapableJavacFileManager(new Context(), true, charset,
+                classBytesClasspath, jarClasspath);
+        List<ByteArrayOutputStream> classFiles = new ArrayList<>();
+
+        try {
+            if (classpath != null) {
+                fileManager.setLocation(StandardLocation.CLASS_PATH, classpath.stream().map(Path::toFile).collect(toList()));
+            }
+
+            JavaFileManager capturingFileManager = new ForwardingJavaFileManager<JavaFileManager>(fileManager) {
+                @Override
+                public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                           JavaFileObject.Kind kind, FileObject sibling) {
+                    return new SimpleJavaFileObject(URI.create("memory:///" + className.replace('.', '/') + kind.extension), kind) {
+                        @Override
+                        public OutputStream openOutputStream() {
+                            ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+                            classFiles.add(classFile);
+                            return classFile;
+                        }
+                    };
+                }
+            };
+
+            // compilation errors aren't reported, since the caller falls back to parsing the sources instead
+            DiagnosticListener<JavaFileObject> ignoreDiagnostics = diagnostic -> {
+            };
+
+            Boolean success = JavacTool.create().getTask(null, capturingFileManager, ignoreDiagnostics,
+                    Arrays.asList("-g", "-proc:none", "-implicit:none", "-nowarn", "-source", "1.8", "-target", "1.8"),
+                    null,
+                    sources.stream().map(Java8ParserInputFileObject::new).collect(toList())
+            ).call();
+
+            if (!Boolean.TRUE.equals(success)) {
+                return null;
+            }
+            return classFiles.stream().map(ByteArrayOutputStream::toByteArray).collect(toList());
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } finally {
+            fileManager.close();
+        }
+    }
+
     private void compileDependencies() {
         if (dependsOn != null) {
-            parseInputs(dependsOn, null, new InMemoryExecutionContext());
+            // part of building compiler state, rather than a parse of the caller's, so it isn't recorded
+            boolean wasRecording = recording;
+            recording = false;
+            try {
+                parseInputs(dependsOn, null, new InMemoryExecutionContext());
+            } finally {
+                recording = wasRecording;
+            }
         }
         Check.instance(context).compiled.clear();
     }
 
+    /**
+     * After entering a batch failed part way, enter on its own each compilation unit that entering never reached,
+     * and complete the classes of those it did, so that one unit that can't be entered doesn't leave the others
+     * without symbols. Units that were already entered must not be entered again, since javac would report their
+     * classes as duplicates and give them erroneous symbols.
+     */
+    private void enterRemaining(Collection<JCTree.JCCompilationUnit> cus, ExecutionContext ctx) {
+        Enter enter = Enter.instance(context);
+        for (JCTree.JCCompilationUnit cu : cus) {
+            try {
+                if (cu.packge == null) {
+                    enter.main(com.sun.tools.javac.util.List.of(cu));
+                } else {
+                    // completing a top-level class enters its members and queues it for attribution
+                    for (JCTree def : cu.defs) {
+                        if (def instanceof JCTree.JCClassDecl && ((JCTree.JCClassDecl) def).sym != null) {
+                            ((JCTree.JCClassDecl) def).sym.complete();
+                        }
+                    }
+                }
+            } catch (Throwable t) {
+                ctx.getOnError().accept(new JavaParsingException("Failed symbol entering of " +
+                        cu.sourcefile.getName(), t));
+            }
+        }
+    }
+
     /**
      * Enter symbol definitions into each compilation unit's scope
      */
@@ -256,24 +901,154 @@ class ReloadableJava8Parser implements JavaParser {
         }
     }
 
+    /**
+     * Registered once per parser, rather than for every file and phase, since registering is a lookup in the
+     * registry. Failures are still registered as they happen, since they are tagged with the exception.
+     */
+    private static class Meters {
+        private static final Meters NOOP = new Meters(new CompositeMeterRegistry());
+
+        private final MeterRegistry registry;
+
+        private final Timer jdkParsing;
+        private final Timer attribution;
+        private final Timer mapping;
+
+        private final Counter files;
+        private final Counter types;
+        private final DistributionSummary bytes;
+        private final DistributionSummary lines;
+        private final DistributionSummary nodes;
+        private final DistributionSummary filesPerSecond;
+
+        private Meters(MeterRegistry registry) {
+            this.registry = registry;
+
+            this.jdkParsing = MetricsHelper.successTags(
+                    Timer.builder("rewrite.parse")
+                            .description("The time spent by the JDK in parsing and tokenizing the source file")
+                            .tag("file.type", "Java")
+                            .tag("step", "(1) JDK parsing"))
+                    .register(registry);
+            this.attribution = MetricsHelper.successTags(
+                    Timer.builder("rewrite.parse")
+                            .description("The time spent by the JDK in type attributing the source file")
+                            .tag("file.type", "Java")
+                            .tag("step", "(2) Type attribution"))
+                    .register(registry);
+            this.mapping = MetricsHelper.successTags(
+                    Timer.builder("rewrite.parse")
+                            .description("The time spent mapping the OpenJDK AST to Rewrite's AST")
+                            .tag("file.type", "Java")
+                            .tag("step", "(3) Map to Rewrite AST"))
+                    .register(registry);
+
+            this.files = Counter.builder("rewrite.parse.files")
+                    .description("The number of source files mapped to compilation units")
+                    .tag("file.type", "Java")
+                    .register(registry);
+            this.types = Counter.builder("rewrite.parse.types")
+                    .description("The number of class types mapped, each once per batch")
+                    .tag("file.type", "Java")
+                    .register(registry);
+            this.bytes = DistributionSummary.builder("rewrite.parse.bytes")
+                    .description("The size of each source file mapped")
+                    .baseUnit("bytes")
+                    .tag("file.type", "Java")
+                    .register(registry);
+            this.lines = DistributionSummary.builder("rewrite.parse.lines")
+                    .description("The number of lines in each source file mapped")
+                    .baseUnit("lines")
+                    .tag("file.type", "Java")
+                    .register(registry);
+            this.nodes = DistributionSummary.builder("rewrite.parse.nodes")
+                    .description("The number of JDK tree nodes converted in each source file mapped")
+                    .baseUnit("nodes")
+                    .tag("file.type", "Java")
+                    .register(registry);
+            this.filesPerSecond = DistributionSummary.builder("rewrite.parse.throughput")
+                    .description("The source files parsed per second by each batch")
+                    .baseUnit("files/s")
+                    .tag("file.type", "Java")
+                    .register(registry);
+        }
+    }
+
     private static class TimedTodo extends Todo {
         private final Todo todo;
+        private final Set<JCTree.JCCompilationUnit> unattributed;
+
+        @Nullable
+        private final Duration fileTimeout;
+
+        private final BooleanSupplier batchStopped;
+        private final Consumer<JCTree.JCCompilationUnit> onStopped;
+        private final boolean recordEvents;
+        private final Timer timer;
+
+        private final Map<JCTree.JCCompilationUnit, Long> attributionNanos = new IdentityHashMap<>();
+
+        /**
+         * Per top-level class, when they are to be reported.
+         */
+        @Nullable
+        private final Map<Env<AttrContext>, Long> classNanos;
+        private final Set<JCTree.JCCompilationUnit> stopped = Collections.newSetFromMap(new IdentityHashMap<>());
+
         private @Nullable Timer.Sample sample;
+        private @Nullable Object event;
+        private @Nullable Env<AttrContext> current;
+        private long currentStart;
 
-        private TimedTodo(Todo todo) {
+        private TimedTodo(Todo todo, Set<JCTree.JCCompilationUnit> unattributed, @Nullable Duration fileTimeout,
+                          BooleanSupplier batchStopped, Consumer<JCTree.JCCompilationUnit> onStopped,
+                          boolean timeClasses, boolean recordEvents, Timer timer) {
             super(new Context());
             this.todo = todo;
+            this.unattributed = unattributed;
+            this.fileTimeout = fileTimeout;
+            this.batchStopped = batchStopped;
+            this.onStopped = onStopped;
+            this.classNanos = timeClasses ? new IdentityHashMap<>() : null;
+            this.recordEvents = recordEvents;
+            this.timer = timer;
         }
 
         @Override
         public boolean isEmpty() {
             if (sample != null) {
-                sample.stop(MetricsHelper.successTags(
-                        Timer.builder("rewrite.parse")
-                                .description("The time spent by the JDK in type attributing the source file")
-                                .tag("file.type", "Java")
-                                .tag("step", "(2) Type attribution"))
-                        .register(Metrics.globalRegistry));
+                sample.stop(timer);
+                sample = null;
+            }
+
+            if (current != null) {
+                if (Java8ParserEvents.shouldCommit(event)) {
+                    Java8ParserEvents.commitAttribution(event, className(current), current.toplevel.sourcefile.getName());
+                }
+                event = null;
+                long nanos = System.nanoTime() - currentStart;
+                attributionNanos.merge(current.toplevel, nanos, Long::sum);
+                if (classNanos != null) {
+                    classNanos.merge(current, nanos, Long::sum);
+                }
+                current = null;
+            }
+
+            while (!todo.isEmpty()) {
+                JCTree.JCCompilationUnit toplevel = todo.peek().toplevel;
+                if (unattributed.contains(toplevel) || stopped.contains(toplevel)) {
+                    // classes of inputs excluded from attribution by the input policy, or already stopped, are
+                    // entered, but never attributed
+                    todo.remove();
+                } else if (batchStopped.getAsBoolean() || (fileTimeout != null &&
+                        attributionNanos.getOrDefault(toplevel, 0L) > fileTimeout.toNanos())) {
+                    // the remaining classes of this input go unattributed, and it is mapped with the types it has
+                    stopped.add(toplevel);
+                    onStopped.accept(toplevel);
+                    todo.remove();
+                } else {
+                    break;
+                }
             }
             return todo.isEmpty();
         }
@@ -281,21 +1056,127 @@ class ReloadableJava8Parser implements JavaParser {
         @Override
         public Env<AttrContext> remove() {
             this.sample = Timer.start();
-            return todo.remove();
+            this.event = recordEvents ? Java8ParserEvents.beginAttribution() : null;
+            this.current = todo.remove();
+            this.currentStart = System.nanoTime();
+            return current;
         }
     }
 
     private static class ByteArrayCapableJavacFileManager extends JavacFileManager {
         private final List<PackageAwareJavaFileObject> classByteClasspath;
+        private final List<InMemoryJar> jarClasspath;
 
         public ByteArrayCapableJavacFileManager(Context context,
                                                 boolean register,
                                                 Charset charset,
-                                                Collection<byte[]> classByteClasspath) {
+                                                List<PackageAwareJavaFileObject> classByteClasspath,
+                                                List<InMemoryJar> jarClasspath) {
             super(context, register, charset);
-            this.classByteClasspath = classByteClasspath.stream()
-                    .map(PackageAwareJavaFileObject::new)
-                    .collect(toList());
+            this.classByteClasspath = classByteClasspath;
+            this.jarClasspath = jarClasspath;
+        }
+
+        /**
+         * Lay out every class file back to back in a single buffer outside of the Java heap, so that the
+         * garbage collector doesn't have to trace them for the lifetime of the parser.
+         */
+        private static List<PackageAwareJavaFileObject> store(Collection<byte[]> classByteClasspath,
+                                                              Java8Parser.ClassBytesStorage storage) {
+            if (storage == Java8Parser.ClassBytesStorage.HEAP || classByteClasspath.isEmpty()) {
+                return classByteClasspath.stream()
+                        .map(classBytes -> new PackageAwareJavaFileObject(classBytes, ByteBuffer.wrap(classBytes)))
+                        .collect(toList());
+            }
+
+            List<List<byte[]>> segments = segments(classByteClasspath);
+            List<ByteBuffer> stores = storage == Java8Parser.ClassBytesStorage.DIRECT ?
+                    direct(segments) :
+                    mapped(segments);
+
+            List<PackageAwareJavaFileObject> stored = new ArrayList<>(classByteClasspath.size());
+            for (int i = 0; i < segments.size(); i++) {
+                ByteBuffer store = stores.get(i);
+                int offset = 0;
+                for (byte[] classBytes : segments.get(i)) {
+                    ByteBuffer slice = store.duplicate();
+                    slice.position(offset);
+                    slice.limit(offset + classBytes.length);
+                    stored.add(new PackageAwareJavaFileObject(classBytes, slice.slice()));
+                    offset += classBytes.length;
+                }
+            }
+            return stored;
+        }
+
+        /**
+         * A buffer holds at most {@link Integer#MAX_VALUE} bytes, so larger classpaths are laid out over several,
+         * without splitting any one class file between them.
+         */
+        private static List<List<byte[]>> segments(Collection<byte[]> classByteClasspath) {
+            List<List<byte[]>> segments = new ArrayList<>();
+            List<byte[]> segment = new ArrayList<>();
+            long segmentSize = 0;
+            for (byte[] classBytes : classByteClasspath) {
+                if (segmentSize + classBytes.length > Integer.MAX_VALUE) {
+                    segments.add(segment);
+                    segment = new ArrayList<>();
+                    segmentSize = 0;
+                }
+                segment.add(classBytes);
+                segmentSize += classBytes.length;
+            }
+            segments.add(segment);
+            return segments;
+        }
+
+        private static int size(List<byte[]> segment) {
+            int size = 0;
+            for (byte[] classBytes : segment) {
+                size += classBytes.length;
+            }
+            return size;
+        }
+
+        private static List<ByteBuffer> direct(List<List<byte[]>> segments) {
+            List<ByteBuffer> stores = new ArrayList<>(segments.size());
+            for (List<byte[]> segment : segments) {
+                ByteBuffer store = ByteBuffer.allocateDirect(size(segment));
+                for (byte[] classBytes : segment) {
+                    store.put(classBytes);
+                }
+                stores.add(store);
+            }
+            return stores;
+        }
+
+        private static List<ByteBuffer> mapped(List<List<byte[]>> segments) {
+            try {
+                Path file = Files.createTempFile("rewrite-java-8-classpath", ".bin");
+                file.toFile().deleteOnExit();
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    List<ByteBuffer> stores = new ArrayList<>(segments.size());
+                    long position = 0;
+                    for (List<byte[]> segment : segments) {
+                        for (byte[] classBytes : segment) {
+                            ByteBuffer src = ByteBuffer.wrap(classBytes);
+                            while (src.hasRemaining()) {
+                                channel.write(src);
+                            }
+                        }
+                        int size = size(segment);
+                        stores.add(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+                        position += size;
+                    }
+                    return stores;
+                } finally {
+                    // the mapping stays valid after the file is unlinked on platforms that allow it,
+                    // otherwise it is removed on exit
+                    file.toFile().delete();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
 
         @Override
@@ -307,6 +1188,8 @@ class ReloadableJava8Parser implements JavaParser {
         public String inferBinaryName(Location location, JavaFileObject file) {
             if (file instanceof PackageAwareJavaFileObject) {
                 return ((PackageAwareJavaFileObject) file).getClassName();
+            } else if (file instanceof InMemoryJarEntryFileObject) {
+                return ((InMemoryJarEntryFileObject) file).getBinaryName();
             }
             return super.inferBinaryName(location, file);
         }
@@ -315,9 +1198,14 @@ class ReloadableJava8Parser implements JavaParser {
         public Iterable<JavaFileObject> list(Location location, String packageName, Set<JavaFileObject.Kind> kinds, boolean recurse) throws IOException {
             if (StandardLocation.CLASS_PATH.equals(location)) {
                 Iterable<JavaFileObject> listed = super.list(location, packageName, kinds, recurse);
+                Stream<JavaFileObject> fromJars = kinds.contains(JavaFileObject.Kind.CLASS) ?
+                        jarClasspath.stream().flatMap(jar -> jar.list(packageName, recurse).stream()) :
+                        Stream.empty();
                 return Stream.concat(
-                        classByteClasspath.stream()
-                                .filter(jfo -> jfo.getPackage().equals(packageName)),
+                        Stream.concat(
+                                classByteClasspath.stream()
+                                        .filter(jfo -> jfo.getPackage().equals(packageName)),
+                                fromJars),
                         StreamSupport.stream(listed.spliterator(), false)
                 ).collect(toList());
             }
@@ -328,9 +1216,9 @@ class ReloadableJava8Parser implements JavaParser {
     private static class PackageAwareJavaFileObject extends SimpleJavaFileObject {
         private final String pkg;
         private final String className;
-        private final byte[] classBytes;
+        private final ByteBuffer classBytes;
 
-        private PackageAwareJavaFileObject(byte[] classBytes) {
+        private PackageAwareJavaFileObject(byte[] classBytes, ByteBuffer storedClassBytes) {
             super(URI.create("dontCare"), Kind.CLASS);
 
             AtomicReference<String> pkgRef = new AtomicReference<>();
@@ -353,7 +1241,7 @@ class ReloadableJava8Parser implements JavaParser {
 
             this.pkg = pkgRef.get();
             this.className = nameRef.get();
-            this.classBytes = classBytes;
+            this.classBytes = storedClassBytes;
         }
 
         public String getPackage() {
@@ -366,7 +1254,373 @@ class ReloadableJava8Parser implements JavaParser {
 
         @Override
         public InputStream openInputStream() {
-            return new ByteArrayInputStream(classBytes);
+            return new ByteBufferInputStream(classBytes.duplicate());
+        }
+    }
+
+    /**
+     * A jar archive held in memory. The central directory is only indexed when javac first lists a package,
+     * and entries are only inflated when javac asks to read them. ZIP64 archives are indexed in place as long
+     * as every offset falls within the buffer. Anything else that can't be read in place is written to a
+     * temporary file and read with {@link ZipFile} instead. That file is closed when the parser is reset and
+     * deleted when it is closed, once no entry is being read from it, and written and opened again if the jar is
+     * read afterwards.
+     */
+    private static class InMemoryJar {
+        private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+        private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+        private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR = 0x07064b50;
+        private static final int CENTRAL_DIRECTORY_ENTRY = 0x02014b50;
+        private static final int LOCAL_HEADER = 0x04034b50;
+        private static final int ZIP64_EXTRA_FIELD = 0x0001;
+        private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+        private final ByteBuffer archive;
+
+        @Nullable
+        private Map<String, List<InMemoryJarEntryFileObject>> entriesByPackage;
+
+        /**
+         * Set once the archive couldn't be indexed in place, so that entries are read from {@link #file} instead.
+         */
+        private boolean readFromFile;
+
+        @Nullable
+        private Path copy;
+
+        @Nullable
+        private ZipFile file;
+
+        private int entriesOpen;
+        private boolean releasePending;
+        private boolean deletePending;
+
+        private InMemoryJar(ByteBuffer archive) {
+            this.archive = archive.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        List<InMemoryJarEntryFileObject> list(String packageName, boolean recurse) {
+            Map<String, List<InMemoryJarEntryFileObject>> index = index();
+            if (!recurse) {
+                return index.getOrDefault(packageName, emptyList());
+            }
+
+            List<InMemoryJarEntryFileObject> listed = new ArrayList<>();
+            for (Map.Entry<String, List<InMemoryJarEntryFileObject>> pkg : index.entrySet()) {
+                if (packageName.isEmpty() || pkg.getKey().equals(packageName) || pkg.getKey().startsWith(packageName + ".")) {
+                    listed.addAll(pkg.getValue());
+                }
+            }
+            return listed;
+        }
+
+        private synchronized Map<String, List<InMemoryJarEntryFileObject>> index() {
+            if (entriesByPackage == null) {
+                try {
+                    entriesByPackage = indexInPlace();
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    org.slf4j.LoggerFactory.getLogger(ReloadableJava8Parser.class)
+                            .debug("Unable to index in-memory jar in place, reading it from a temporary file", e);
+                    entriesByPackage = indexFromFile();
+                }
+            }
+            return entriesByPackage;
+        }
+
+        private Map<String, List<InMemoryJarEntryFileObject>> indexInPlace() {
+            Map<String, List<InMemoryJarEntryFileObject>> index = new HashMap<>();
+
+            int eocd = endOfCentralDirectory();
+            long entryCount = Short.toUnsignedInt(archive.getShort(eocd + 10));
+            long offset = Integer.toUnsignedLong(archive.getInt(eocd + 16));
+
+            if (eocd >= 20 && archive.getInt(eocd - 20) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR) {
+                int zip64Eocd = position(archive.getLong(eocd - 20 + 8));
+                if (archive.getInt(zip64Eocd) != ZIP64_END_OF_CENTRAL_DIRECTORY) {
+                    throw new IllegalArgumentException("Malformed ZIP64 end of central directory in in-memory jar");
+                }
+                entryCount = archive.getLong(zip64Eocd + 32);
+                offset = archive.getLong(zip64Eocd + 48);
+            }
+
+            int entry = position(offset);
+            for (long i = 0; i < entryCount; i++) {
+                if (archive.getInt(entry) != CENTRAL_DIRECTORY_ENTRY) {
+                    throw new IllegalArgumentException("Malformed central directory in in-memory jar");
+                }
+
+                int method = Short.toUnsignedInt(archive.getShort(entry + 10));
+                long compressedSize = Integer.toUnsignedLong(archive.getInt(entry + 20));
+                long uncompressedSize = Integer.toUnsignedLong(archive.getInt(entry + 24));
+                int nameLength = Short.toUnsignedInt(archive.getShort(entry + 28));
+                int extraLength = Short.toUnsignedInt(archive.getShort(entry + 30));
+                int commentLength = Short.toUnsignedInt(archive.getShort(entry + 32));
+                long localHeaderOffset = Integer.toUnsignedLong(archive.getInt(entry + 42));
+
+                // the ZIP64 extra field only holds those values that didn't fit, in this order
+                int extra = entry + 46 + nameLength;
+                int extraEnd = extra + extraLength;
+                while (extra + 4 <= extraEnd) {
+                    int headerId = Short.toUnsignedInt(archive.getShort(extra));
+                    int dataSize = Short.toUnsignedInt(archive.getShort(extra + 2));
+                    if (headerId == ZIP64_EXTRA_FIELD) {
+                        int field = extra + 4;
+                        if (uncompressedSize == ZIP64_MAGIC) {
+                            field += 8;
+                        }
+                        if (compressedSize == ZIP64_MAGIC) {
+                            compressedSize = archive.getLong(field);
+                            field += 8;
+                        }
+                        if (localHeaderOffset == ZIP64_MAGIC) {
+                            localHeaderOffset = archive.getLong(field);
+                        }
+                    }
+                    extra += 4 + dataSize;
+                }
+
+                String name = name(entry + 46, nameLength);
+                if (name.endsWith(".class") && !name.endsWith("module-info.class")) {
+                    int localHeader = position(localHeaderOffset);
+                    if (compressedSize > archive.limit() - localHeader) {
+                        throw new IllegalArgumentException("Entry " + name + " extends past the end of in-memory jar");
+                    }
+                    add(index, new InMemoryJarEntryFileObject(this, name, method, localHeader, (int) compressedSize));
+                }
+
+                entry += 46 + nameLength + extraLength + commentLength;
+            }
+
+            return index;
+        }
+
+        private Map<String, List<InMemoryJarEntryFileObject>> indexFromFile() {
+            readFromFile = true;
+            Map<String, List<InMemoryJarEntryFileObject>> index = new HashMap<>();
+            Enumeration<? extends ZipEntry> entries = zipFile().entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.endsWith(".class") && !name.endsWith("module-info.class")) {
+                    add(index, new InMemoryJarEntryFileObject(this, name, ZipEntry.STORED, 0, 0));
+                }
+            }
+            return index;
+        }
+
+        private synchronized ZipFile zipFile() {
+            if (file == null) {
+                try {
+                    if (copy == null || !Files.exists(copy)) {
+                        copy = Files.createTempFile("rewrite-java-8-jar", ".jar");
+                        copy.toFile().deleteOnExit();
+                        try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.WRITE)) {
+                            ByteBuffer src = archive.duplicate();
+                            src.rewind();
+                            while (src.hasRemaining()) {
+                                channel.write(src);
+                            }
+                        }
+                    }
+                    file = new ZipFile(copy.toFile());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return file;
+        }
+
+        /**
+         * Close the temporary file this jar is read from, if any.
+         */
+        synchronized void release() {
+            releasePending = true;
+            closeUnlessOpen();
+        }
+
+        /**
+         * Close and delete the temporary file this jar is read from, if any.
+         */
+        synchronized void close() {
+            releasePending = true;
+            deletePending = true;
+            closeUnlessOpen();
+        }
+
+        private synchronized void entryClosed() {
+            entriesOpen--;
+            closeUnlessOpen();
+        }
+
+        private void closeUnlessOpen() {
+            if (entriesOpen > 0) {
+                return;
+            }
+            try {
+                if (releasePending && file != null) {
+                    file.close();
+                    file = null;
+                }
+                if (deletePending && copy != null) {
+                    Files.deleteIfExists(copy);
+                    copy = null;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                releasePending = false;
+                deletePending = false;
+            }
+        }
+
+        private static void add(Map<String, List<InMemoryJarEntryFileObject>> index, InMemoryJarEntryFileObject entry) {
+            int lastDot = entry.getBinaryName().lastIndexOf('.');
+            String pkg = lastDot < 0 ? "" : entry.getBinaryName().substring(0, lastDot);
+            index.computeIfAbsent(pkg, p -> new ArrayList<>()).add(entry);
+        }
+
+        private String name(int offset, int length) {
+            byte[] nameBytes = new byte[length];
+            for (int n = 0; n < length; n++) {
+                nameBytes[n] = archive.get(offset + n);
+            }
+            return new String(nameBytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * An offset read from the archive, which has to fall within the buffer to be read in place.
+         */
+        private int position(long offset) {
+            if (offset < 0 || offset >= archive.limit()) {
+                throw new IllegalArgumentException("Offset " + offset + " is outside of in-memory jar");
+            }
+            return (int) offset;
+        }
+
+        private int endOfCentralDirectory() {
+            // the end of central directory record is 22 bytes followed by a comment of up to 65535 bytes
+            for (int i = archive.limit() - 22; i >= Math.max(0, archive.limit() - 22 - 0xFFFF); i--) {
+                if (archive.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("In-memory jar has no end of central directory record");
+        }
+
+        InputStream open(InMemoryJarEntryFileObject entry) {
+            synchronized (this) {
+                if (readFromFile) {
+                    try {
+                        ZipFile zip = zipFile();
+                        InputStream in = zip.getInputStream(zip.getEntry(entry.entryName));
+                        entriesOpen++;
+                        return new FilterInputStream(in) {
+                            private boolean closed;
+
+                            @Override
+                            public void close() throws IOException {
+                                if (!closed) {
+                                    closed = true;
+                                    try {
+                                        super.close();
+                                    } finally {
+                                        entryClosed();
+                                    }
+                                }
+                            }
+                        };
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+
+            int localHeaderOffset = entry.localHeaderOffset;
+            if (archive.getInt(localHeaderOffset) != LOCAL_HEADER) {
+                throw new IllegalArgumentException("Malformed local header in in-memory jar");
+            }
+
+            int nameLength = Short.toUnsignedInt(archive.getShort(localHeaderOffset + 26));
+            int extraLength = Short.toUnsignedInt(archive.getShort(localHeaderOffset + 28));
+            int dataOffset = localHeaderOffset + 30 + nameLength + extraLength;
+
+            ByteBuffer data = archive.duplicate();
+            data.position(dataOffset);
+            data.limit(dataOffset + entry.compressedSize);
+            InputStream stored = new ByteBufferInputStream(data.slice());
+
+            if (entry.method == ZipEntry.STORED) {
+                return stored;
+            } else if (entry.method == ZipEntry.DEFLATED) {
+                Inflater inflater = new Inflater(true);
+                return new InflaterInputStream(stored, inflater) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        inflater.end();
+                    }
+                };
+            }
+            throw new IllegalArgumentException("Unsupported compression method " + entry.method + " in in-memory jar");
+        }
+    }
+
+    private static class InMemoryJarEntryFileObject extends SimpleJavaFileObject {
+        private final InMemoryJar jar;
+        private final String entryName;
+        private final String binaryName;
+        private final int method;
+        private final int localHeaderOffset;
+        private final int compressedSize;
+
+        private InMemoryJarEntryFileObject(InMemoryJar jar, String entryName, int method,
+                                           int localHeaderOffset, int compressedSize) {
+            super(URI.create("memory:///" + entryName), Kind.CLASS);
+            this.jar = jar;
+            this.entryName = entryName;
+            this.binaryName = entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.');
+            this.method = method;
+            this.localHeaderOffset = localHeaderOffset;
+            this.compressedSize = compressedSize;
+        }
+
+        public String getBinaryName() {
+            return binaryName;
+        }
+
+        @Override
+        public InputStream openInputStream() {
+            return jar.open(this);
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
         }
     }
 }
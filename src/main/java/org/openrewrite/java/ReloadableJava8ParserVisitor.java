@@ -38,6 +38,7 @@ import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
@@ -72,6 +73,15 @@ public class ReloadableJava8ParserVisitor extends TreePathScanner<J, Space> {
     private final Map<String, JavaType.Class> sharedClassTypes;
     private final ExecutionContext ctx;
 
+    /**
+     * Checked every {@link #STOP_CHECK_INTERVAL} conversions, so that mapping a pathological source can be abandoned.
+     */
+    private final BooleanSupplier stop;
+    private int conversions = 0;
+    private boolean recordEvents = true;
+
+    private static final int STOP_CHECK_INTERVAL = 256;
+
     @SuppressWarnings("NotNullFieldNotInitialized")
     private EndPosTable endPosTable;
 
@@ -83,12 +93,31 @@ public class ReloadableJava8ParserVisitor extends TreePathScanner<J, Space> {
     public ReloadableJava8ParserVisitor(Path sourcePath, String source, boolean relaxedClassTypeMatching,
                                         Collection<NamedStyles> styles, Map<String, JavaType.Class> sharedClassTypes,
                                         ExecutionContext ctx) {
+        this(sourcePath, source, relaxedClassTypeMatching, styles, sharedClassTypes, ctx, () -> false);
+    }
+
+    public ReloadableJava8ParserVisitor(Path sourcePath, String source, boolean relaxedClassTypeMatching,
+                                        Collection<NamedStyles> styles, Map<String, JavaType.Class> sharedClassTypes,
+                                        ExecutionContext ctx, BooleanSupplier stop) {
         this.sourcePath = sourcePath;
         this.source = source;
         this.relaxedClassTypeMatching = relaxedClassTypeMatching;
         this.styles = styles;
         this.sharedClassTypes = sharedClassTypes;
         this.ctx = ctx;
+        this.stop = stop;
+    }
+
+    /**
+     * @return The number of javac tree nodes converted so far. Links of binary and method invocation chains that
+     * are converted iteratively aren't counted.
+     */
+    int getConversions() {
+        return conversions;
+    }
+
+    void setRecordEvents(boolean recordEvents) {
+        this.recordEvents = recordEvents;
     }
 
     @Override
@@ -189,93 +218,96 @@ public class ReloadableJava8ParserVisitor extends TreePathScanner<J, Space> {
 
     @Override
     public J visitBinary(BinaryTree node, Space fmt) {
-        Expression left = convert(node.getLeftOperand());
+        // generated code can nest thousands of operators on the left, as in "a" + b + "c" + ..., so rather than
+        // recursing once per operator, walk down the chain to its leftmost operand and build it back up from there
+        List<JCBinary> chain = new ArrayList<>();
+        ExpressionTree leftmost = node;
+        while (leftmost instanceof JCBinary) {
+            chain.add((JCBinary) leftmost);
+            leftmost = ((JCBinary) leftmost).getLeftOperand();
+        }
 
-        Space opPrefix = whitespace();
-        J.Binary.Type op;
-        switch (((JCBinary) node).getTag()) {
+        // the prefix each nested binary would have been converted with, normally empty as they all start where
+        // the leftmost operand does
+        Space[] prefixes = new Space[chain.size()];
+        prefixes[0] = fmt;
+        for (int i = 1; i < chain.size(); i++) {
+            prefixes[i] = prefix(chain.get(i));
+        }
+
+        Expression left = convert(leftmost);
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            JCBinary binary = chain.get(i);
+            Space opPrefix = whitespace();
+            J.Binary.Type op = binaryOperator(binary);
+            left = new J.Binary(randomId(), prefixes[i], Markers.EMPTY, left, padLeft(opPrefix, op),
+                    convert(binary.getRightOperand()), type(binary));
+        }
+        return left;
+    }
+
+    private J.Binary.Type binaryOperator(JCBinary node) {
+        switch (node.getTag()) {
             case PLUS:
                 skip("+");
-                op = J.Binary.Type.Addition;
-                break;
+                return J.Binary.Type.Addition;
             case MINUS:
                 skip("-");
-                op = J.Binary.Type.Subtraction;
-                break;
+                return J.Binary.Type.Subtraction;
             case DIV:
                 skip("/");
-                op = J.Binary.Type.Division;
-                break;
+                return J.Binary.Type.Division;
             case MUL:
                 skip("*");
-                op = J.Binary.Type.Multiplication;
-                break;
+                return J.Binary.Type.Multiplication;
             case MOD:
                 skip("%");
-                op = J.Binary.Type.Modulo;
-                break;
+                return J.Binary.Type.Modulo;
             case AND:
                 skip("&&");
-                op = J.Binary.Type.And;
-                break;
+                return J.Binary.Type.And;
             case OR:
                 skip("||");
-                op = J.Binary.Type.Or;
-                break;
+                return J.Binary.Type.Or;
             case BITAND:
                 skip("&");
-                op = J.Binary.Type.BitAnd;
-                break;
+                return J.Binary.Type.BitAnd;
             case BITOR:
                 skip("|");
-                op = J.Binary.Type.BitOr;
-                break;
+                return J.Binary.Type.BitOr;
             case BITXOR:
                 skip("^");
-                op = J.Binary.Type.BitXor;
-                break;
+                return J.Binary.Type.BitXor;
             case SL:
                 skip("<<");
-                op = J.Binary.Type.LeftShift;
-                break;
+                return J.Binary.Type.LeftShift;
             case SR:
                 skip(">>");
-                op = J.Binary.Type.RightShift;
-                break;
+                return J.Binary.Type.RightShift;
             case USR:
                 skip(">>>");
-                op = J.Binary.Type.UnsignedRightShift;
-                break;
+                return J.Binary.Type.UnsignedRightShift;
             case LT:
                 skip("<");
-                op = J.Binary.Type.LessThan;
-                break;
+                return J.Binary.Type.LessThan;
             case GT:
                 skip(">");
-                op = J.Binary.Type.GreaterThan;
-                break;
+                return J.Binary.Type.GreaterThan;
             case LE:
                 skip("<=");
-                op = J.Binary.Type.LessThanOrEqual;
-                break;
+                return J.Binary.Type.LessThanOrEqual;
             case GE:
                 skip(">=");
-                op = J.Binary.Type.GreaterThanOrEqual;
-                break;
+                return J.Binary.Type.GreaterThanOrEqual;
             case EQ:
                 skip("==");
-                op = J.Binary.Type.Equal;
-                break;
+                return J.Binary.Type.Equal;
             case NE:
                 skip("!=");
-                op = J.Binary.Type.NotEqual;
-                break;
+                return J.Binary.Type.NotEqual;
             default:
-                throw new IllegalArgumentException("Unexpected binary tag " + ((JCBinary) node).getTag());
+                throw new IllegalArgumentException("Unexpected binary tag " + node.getTag());
         }
-
-        return new J.Binary(randomId(), fmt, Markers.EMPTY, left, padLeft(opPrefix, op),
-                convert(node.getRightOperand()), type(node));
     }
 
     @Override
@@ -768,8 +800,24 @@ public class ReloadableJava8ParserVisitor extends TreePathScanner<J, Space> {
 
     @Override
     public J visitMethodInvocation(MethodInvocationTree node, Space fmt) {
-        JCExpression jcSelect = ((JCTree.JCMethodInvocation) node).getMethodSelect();
+        // fluent chains like a.b().c().d() nest each call in the select of the next, so convert them from the
+        // innermost call outwards rather than recursing once per call
+        List<JCMethodInvocation> chain = new ArrayList<>();
+        JCMethodInvocation innermost = (JCMethodInvocation) node;
+        chain.add(innermost);
+        while (innermost.getMethodSelect() instanceof JCFieldAccess &&
+                ((JCFieldAccess) innermost.getMethodSelect()).selected instanceof JCMethodInvocation) {
+            innermost = (JCMethodInvocation) ((JCFieldAccess) innermost.getMethodSelect()).selected;
+            chain.add(innermost);
+        }
+
+        Space[] prefixes = new Space[chain.size()];
+        prefixes[0] = fmt;
+        for (int i = 1; i < chain.size(); i++) {
+            prefixes[i] = prefix(chain.get(i));
+        }
 
+        JCExpression jcSelect = innermost.getMethodSelect();
         JRightPadded<Expression> select = null;
         if (jcSelect instanceof JCFieldAccess) {
             select = convert(((JCFieldAccess) jcSelect).selected, t -> sourceBefore("."));
@@ -777,6 +825,19 @@ public class ReloadableJava8ParserVisitor extends TreePathScanner<J, Space> {
             throw new IllegalStateException("Unexpected method select type " + jcSelect.getClass().getSimpleName());
         }
 
+        J.MethodInvocation invocation = methodInvocation(innermost, prefixes[chain.size() - 1], select);
+        for (int i = chain.size() - 2; i >= 0; i--) {
+            select = padRight(invocation, sourceBefore("."));
+            cursor(max(endPos(chain.get(i + 1)), cursor));
+            invocation = methodInvocation(chain.get(i), prefixes[i], select);
+        }
+        return invocation;
+    }
+
+    private J.MethodInvocation methodInvocation(JCMethodInvocation node, Space fmt,
+                                                @Nullable JRightPadded<Expression> select) {
+        JCExpression jcSelect = node.getMethodSelect();
+
         // generic type parameters can only exist on qualified targets
         JContainer<Expression> typeParams = null;
         if (!node.getTypeArguments().isEmpty()) {
@@ -1366,12 +1427,27 @@ public class ReloadableJava8ParserVisitor extends TreePathScanner<J, Space> {
      * --------------
      */
 
+    /**
+     * @return The source between the cursor and the start of {@code t}, which is consumed.
+     */
+    private Space prefix(Tree t) {
+        String prefix = source.substring(cursor, max(((JCTree) t).getStartPosition(), cursor));
+        cursor += prefix.length();
+        return format(prefix);
+    }
+
     private <J2 extends J> J2 convert(Tree t) {
+        if (++conversions % STOP_CHECK_INTERVAL == 0) {
+            if (stop.getAsBoolean()) {
+                throw new MappingStoppedException(sourcePath);
+            }
+        }
+
         try {
-            String prefix = source.substring(cursor, max(((JCTree) t).getStartPosition(), cursor));
-            cursor += prefix.length();
-            @SuppressWarnings("unchecked") J2 j = (J2) scan(t, format(prefix));
+            @SuppressWarnings("unchecked") J2 j = (J2) scan(t, prefix(t));
             return j;
+        } catch (MappingStoppedException ex) {
+            throw ex;
         } catch (Throwable ex) {
             // this SHOULD never happen, but is here simply as a diagnostic measure in the event of unexpected exceptions
             StringBuilder message = new StringBuilder("Failed to convert for the following cursor stack:");
@@ -1632,6 +1708,7 @@ public class ReloadableJava8ParserVisitor extends TreePathScanner<J, Space> {
                     if (flyweight != null) {
                         return flyweight;
                     }
+                    Object event = recordEvents ? Java8ParserEvents.beginTypeCacheMiss() : null;
 
                     List<Symbol> stackWithSym = new ArrayList<>(stack);
                     stackWithSym.add(sym);
@@ -1712,6 +1789,9 @@ public class ReloadableJava8ParserVisitor extends TreePathScanner<J, Space> {
                             relaxedClassTypeMatching);
 
                     sharedClassTypes.put(sym.className(), clazz);
+                    if (Java8ParserEvents.shouldCommit(event)) {
+                        Java8ParserEvents.commitTypeCacheMiss(event, sym.className());
+                    }
 
                     return clazz;
                 }
@@ -2099,4 +2179,13 @@ public class ReloadableJava8ParserVisitor extends TreePathScanner<J, Space> {
         }
         return annotations;
     }
+
+    /**
+     * Thrown when mapping is abandoned because the parser's deadline passed or it was cancelled.
+     */
+    static class MappingStoppedException extends RuntimeException {
+        MappingStoppedException(Path sourcePath) {
+            super("Stopped mapping " + sourcePath, null, false, false);
+        }
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.java.tree.J;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The result of parsing with {@link Java8Parser.Builder#spillTo(Path)}. Every compilation unit is encoded to a
+ * temporary file as soon as it has been mapped, and only the most recently used units are kept on the heap. Other
+ * units are decoded again when they are accessed.
+ * <p>
+ * Types are kept on the heap in a table shared by every unit, and only their index in it is spilled, so units that
+ * have been paged back in still share their types by identity with each other and with resident units.
+ * {@link #close()} deletes the temporary files.
+ */
+public final class SpilledCompilationUnits extends AbstractList<J.CompilationUnit> implements Closeable {
+    private final Path directory;
+    private final Map<Integer, J.CompilationUnit> resident;
+    private final Java8LstCodec.TypeTable types = new Java8LstCodec.TypeTable();
+    private int size;
+
+    SpilledCompilationUnits(Path parentDirectory, int maxResident) {
+        try {
+            Files.createDirectories(parentDirectory);
+            this.directory = Files.createTempDirectory(parentDirectory, "rewrite-java-8-");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        this.resident = new LinkedHashMap<Integer, J.CompilationUnit>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, J.CompilationUnit> eldest) {
+                return size() > maxResident;
+            }
+        };
+    }
+
+    @Override
+    public synchronized boolean add(J.CompilationUnit cu) {
+        write(size, cu);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized J.CompilationUnit set(int index, J.CompilationUnit cu) {
+        J.CompilationUnit previous = get(index);
+        write(index, cu);
+        return previous;
+    }
+
+    @Override
+    public synchronized J.CompilationUnit get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        J.CompilationUnit cu = resident.get(index);
+        if (cu == null) {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file(index)))) {
+                cu = new Java8LstCodec.Decoder(in, types).read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            resident.put(index, cu);
+        }
+        return cu;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    private void write(int index, J.CompilationUnit cu) {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file(index)))) {
+            Java8LstCodec.Encoder encoder = new Java8LstCodec.Encoder(out, types);
+            encoder.write(cu);
+            encoder.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        resident.put(index, cu);
+    }
+
+    private Path file(int index) {
+        return directory.resolve(index + ".lst");
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        resident.clear();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> file.toFile().delete());
+        }
+        Files.deleteIfExists(directory);
+    }
+}
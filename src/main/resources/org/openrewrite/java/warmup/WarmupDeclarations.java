@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.warmup;
+
+import java.lang.annotation.*;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Part of the synthetic corpus used to warm up the parser. Exercises declarations, annotations and
+ * references across files in the corpus.
+ */
+@Deprecated
+@WarmupDeclarations.Marker(value = "type", priority = 1, tags = {"a", "b"})
+public final class WarmupDeclarations implements Iterable<WarmupDeclarations.Shape> {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target({ElementType.TYPE, ElementType.METHOD, ElementType.FIELD, ElementType.TYPE_USE, ElementType.PARAMETER})
+    @Documented
+    public @interface Marker {
+        String value() default "";
+
+        int priority() default 0;
+
+        String[] tags() default {};
+    }
+
+    public enum Shape implements Supplier<Double> {
+        CIRCLE(1.0) {
+            @Override
+            public Double get() {
+                return Math.PI * size * size;
+            }
+        },
+        SQUARE(2.0),
+        @Deprecated TRIANGLE(3.0);
+
+        protected final double size;
+
+        Shape(double size) {
+            this.size = size;
+        }
+
+        @Override
+        public Double get() {
+            return size * size;
+        }
+    }
+
+    private final List<@Marker Shape> shapes = new ArrayList<>();
+
+    @Marker("field")
+    private static final Map<Shape, Integer> COUNTS = new EnumMap<>(Shape.class);
+
+    @SafeVarargs
+    public WarmupDeclarations(@Marker("param") final Shape... shapes) {
+        this.shapes.addAll(Arrays.asList(shapes));
+    }
+
+    @Override
+    @Marker
+    public Iterator<Shape> iterator() {
+        return shapes.iterator();
+    }
+
+    public native void nativeMethod();
+
+    public strictfp double area() {
+        double total = 0;
+        for (Shape shape : this) {
+            total += shape.get();
+            COUNTS.merge(shape, 1, Integer::sum);
+        }
+        return total;
+    }
+
+    public int statements(WarmupStatements.Nested nested) throws Exception {
+        WarmupStatements.Visitor<Integer> visitor = o -> o.hashCode();
+        return nested.arithmetic(1, 2, 3L, 4L) + visitor.visitAll(this, nested) +
+                nested.controlFlow(Arrays.asList("a", "bb", "")).length();
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.warmup;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * Part of the synthetic corpus used to warm up the parser. Exercises every kind of statement and expression.
+ */
+@SuppressWarnings({"unused", "unchecked"})
+public abstract class WarmupStatements<T extends Comparable<? super T>> extends AbstractList<T> implements Serializable, Cloneable {
+    private static final long serialVersionUID = 1L;
+    private static final String CONSTANT = "a" + "b" + 'c' + 1 + 2L + 3.0f + 4.0d + true + null;
+
+    protected transient volatile int counter = 0x1F, other = 017, bits = 0b1010;
+    int[] dims[] = new int[2][];
+    final Object[] initialized = {1, "two", 3.0};
+
+    static {
+        System.setProperty("warmup", CONSTANT);
+    }
+
+    {
+        counter++;
+    }
+
+    public WarmupStatements() {
+        this(emptyList());
+    }
+
+    protected WarmupStatements(Collection<? extends T> initial) {
+        super();
+        addAll(initial);
+    }
+
+    @Override
+    public abstract T get(int index);
+
+    @Override
+    public int size() {
+        return counter;
+    }
+
+    public synchronized int arithmetic(int a, int b, long... rest) throws IOException, IllegalStateException {
+        int r = a + b - a * b / (b == 0 ? 1 : b) % 7;
+        r += a;
+        r -= b;
+        r *= 2;
+        r /= 3;
+        r %= 5;
+        r <<= 1;
+        r >>= 1;
+        r >>>= 1;
+        r &= 0xFF;
+        r |= 0x10;
+        r ^= 0x01;
+        r = (r << 2) | (r >> 1) & (r >>> 3) ^ ~r;
+        boolean logical = a < b && b <= r || r > a && a >= b != (r == a);
+        r = logical ? -r : +r;
+        r++;
+        --r;
+        r--;
+        ++r;
+        logical = !logical;
+        for (long l : rest) {
+            r += (int) l;
+        }
+        assert r != Integer.MIN_VALUE : "overflow";
+        return r;
+    }
+
+    public String controlFlow(List<String> items) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        outer:
+        for (int i = 0, j = items.size(); i < j; i++, j--) {
+            if (items.get(i).isEmpty()) {
+                continue;
+            } else if (items.get(i).length() > 10) {
+                break outer;
+            } else {
+                sb.append(items.get(i));
+            }
+            int k = 0;
+            while (k < i) {
+                k++;
+                if (k == 3) continue outer;
+            }
+            do {
+                k--;
+            } while (k > 0);
+        }
+        switch (items.size()) {
+            case 0:
+                return "none";
+            case 1:
+            case 2:
+                sb.append("few");
+                break;
+            default:
+                sb.append("many");
+        }
+        ;
+        try (Reader reader = new StringReader(sb.toString()); BufferedReader buffered = new BufferedReader(reader)) {
+            return buffered.readLine();
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw e;
+        } finally {
+            synchronized (this) {
+                counter = 0;
+            }
+        }
+    }
+
+    public <R> List<R> functional(List<? extends T> in, Function<? super T, ? extends R> f) throws Exception {
+        Callable<String> callable = () -> "called";
+        Function<String, Integer> length = String::length;
+        Function<Integer, int[]> newArray = int[]::new;
+        Comparator<T> comparator = (T a, T b) -> {
+            return a.compareTo(b);
+        };
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                counter = length.apply(CONSTANT);
+            }
+        };
+        runnable.run();
+        Object o = in;
+        if (o instanceof List) {
+            List<?> l = (List<?>) o;
+            o = l.isEmpty() ? callable.call() : l.get(0);
+        }
+        return in.stream()
+                .sorted(comparator)
+                .map(f)
+                .filter(Objects::nonNull)
+                .collect(Collectors.<R>toList());
+    }
+
+    public static <E extends Enum<E> & Comparable<E>> Map<String, List<? extends Number>> generics(Class<E> type) {
+        Map<String, List<? extends Number>> m = new HashMap<>();
+        m.put(type.getName(), new ArrayList<Integer>(Arrays.asList(1, 2, 3)));
+        char[][] grid = new char[][]{{'a', '\n'}, {'\t', 'A'}};
+        m.put(String.valueOf(grid[0][1]), Collections.<Double>emptyList());
+        return m;
+    }
+
+    interface Visitor<R> {
+        R visit(Object o);
+
+        default R visitAll(Object... os) {
+            R r = null;
+            for (Object o : os) {
+                r = visit(o);
+            }
+            return r;
+        }
+    }
+
+    static class Nested extends WarmupStatements<String> {
+        @Override
+        public String get(int index) {
+            if (index < 0) {
+                throw new IndexOutOfBoundsException("index " + index);
+            }
+            return super.toString() + this.counter + WarmupStatements.CONSTANT;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.openrewrite.InMemoryExecutionContext
+
+class Java8DeepExpressionTest {
+
+    private fun assertPrintIdempotent(source: String) {
+        val errors = mutableListOf<Throwable>()
+        val cu = Java8Parser.builder().build().parse(InMemoryExecutionContext { errors.add(it) }, source)[0]
+        assertEquals(emptyList<Throwable>(), errors)
+        assertEquals(source, cu.print())
+    }
+
+    @Test
+    fun binaryChainWithComments() = assertPrintIdempotent(
+        """
+            class A {
+                int n(int i) {
+                    return /* a */ i + 1 /* b */ * 2
+                        - ( i  << 2 ) // c
+                        +i;
+                }
+            }
+        """.trimIndent()
+    )
+
+    @Test
+    fun methodChainWithTypeArgumentsAndComments() = assertPrintIdempotent(
+        """
+            import java.util.*;
+            class A {
+                Object o = new ArrayList<String>()
+                    . stream() /* a */
+                    .<String>map(s -> s.trim())
+                    // b
+                    .filter(s -> !s.isEmpty()) .count();
+            }
+        """.trimIndent()
+    )
+
+    @Test
+    fun tenThousandOperands() {
+        val source = StringBuilder("class A {\n    String s = \"select\"")
+        for (i in 0 until 10_000) {
+            source.append("\n        + \"column$i,\"")
+        }
+        source.append(";\n}\n")
+
+        // javac recurses once per operator in attribution, so give it a generous stack
+        var failure: Throwable? = null
+        val parse = Thread(null, {
+            try {
+                assertPrintIdempotent(source.toString())
+            } catch (t: Throwable) {
+                failure = t
+            }
+        }, "deep-expression", 512L * 1024 * 1024)
+        parse.start()
+        parse.join()
+        failure?.let { throw it }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.openrewrite.InMemoryExecutionContext
+import org.openrewrite.java.tree.J
+import org.openrewrite.java.tree.JavaType
+import org.openrewrite.java.tree.Space
+import org.openrewrite.marker.Markers
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.nio.charset.StandardCharsets
+import java.util.*
+
+class Java8LstCodecTest {
+
+    @Test
+    fun roundTrip() {
+        val cus = Java8Parser.builder().build().parse(
+            InMemoryExecutionContext(),
+            """
+                import java.util.*;
+                public class A {
+                    List<String> names = new ArrayList<>();
+                    /* comment */ int count(String s) { return s.length() + names.size(); }
+                }
+            """.trimIndent(),
+            """
+                public class B extends A {
+                    String name() { return names.isEmpty() ? "" : names.get(0); }
+                }
+            """.trimIndent()
+        )
+
+        val out = ByteArrayOutputStream()
+        val encoder = Java8LstCodec.Encoder(out)
+        cus.forEach { encoder.write(it) }
+        encoder.flush()
+
+        val decoder = Java8LstCodec.Decoder(ByteArrayInputStream(out.toByteArray()))
+        val decoded = cus.map { decoder.read<J.CompilationUnit>() }
+
+        cus.zip(decoded).forEach { (original, copy) ->
+            assertEquals(original.printTrimmed(), copy.printTrimmed())
+            assertEquals(original.id, copy.id)
+            assertEquals(original.sourcePath, copy.sourcePath)
+        }
+
+        // types shared between units by the parser are still shared once decoded
+        val a = decoded[0].classes[0].type
+        val bSuper = decoded[1].classes[0].extends!!.type
+        assertSame(a, bSuper)
+    }
+
+    @Test
+    fun canonicalInstancesKeepTheirIdentity() {
+        val decoded = roundTrip(Arrays.asList(Space.EMPTY, Markers.EMPTY, JavaType.Primitive.Boolean))
+
+        assertSame(Space.EMPTY, decoded[0])
+        assertSame(Markers.EMPTY, decoded[1])
+        assertSame(JavaType.Primitive.Boolean, decoded[2])
+    }
+
+    @Test
+    fun collectionsKeepTheirKind() {
+        val collections: List<Any> = Arrays.asList(
+            ArrayList(Arrays.asList("a", "b")),
+            LinkedList(Arrays.asList("a", "b")),
+            Arrays.asList("a", "b"),
+            Collections.unmodifiableList(ArrayList(Arrays.asList("a", "b"))),
+            Collections.singletonList("a"),
+            Collections.emptyList<String>(),
+            LinkedHashSet(Arrays.asList("b", "a")),
+            TreeSet(Arrays.asList("b", "a")),
+            EnumSet.of(JavaType.Primitive.Int, JavaType.Primitive.Boolean),
+            EnumSet.noneOf(JavaType.Primitive::class.java),
+            Collections.emptySet<String>(),
+            HashMap(Collections.singletonMap("a", 1)),
+            TreeMap(Collections.singletonMap("a", 1)),
+            Collections.unmodifiableMap(LinkedHashMap(Collections.singletonMap("a", 1))),
+            Collections.emptyMap<String, Int>()
+        )
+
+        roundTrip(collections).zip(collections).forEach { (copy, original) ->
+            assertSame(original.javaClass, copy.javaClass)
+            assertEquals(original, copy)
+        }
+    }
+
+    @Test
+    fun encoderRejectsOtherClasses() {
+        val encoder = Java8LstCodec.Encoder(ByteArrayOutputStream())
+        assertThrows(IllegalArgumentException::class.java) { encoder.write(Arrays.asList(Thread())) }
+        assertThrows(IllegalArgumentException::class.java) { encoder.write(Vector<String>()) }
+    }
+
+    @Test
+    fun decoderRejectsOtherClassesBeforeLoadingThem() {
+        val name = "java.lang.Thread".toByteArray(StandardCharsets.UTF_8)
+        val out = ByteArrayOutputStream()
+        out.write(Java8LstCodec.OBJECT)
+        out.write(0) // a class not seen before
+        out.write(Java8LstCodec.STRING)
+        out.write(name.size)
+        out.write(name)
+
+        val e = assertThrows(IOException::class.java) {
+            Java8LstCodec.Decoder(ByteArrayInputStream(out.toByteArray())).read<Any>()
+        }
+        assertTrue(e.message!!.contains("java.lang.Thread"))
+    }
+
+    private fun roundTrip(value: List<Any>): List<Any> {
+        val out = ByteArrayOutputStream()
+        val encoder = Java8LstCodec.Encoder(out)
+        encoder.write(value)
+        encoder.flush()
+        return Java8LstCodec.Decoder(ByteArrayInputStream(out.toByteArray())).read()
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.openrewrite.InMemoryExecutionContext
+
+class Java8ParserAttributionTimingsTest {
+
+    @Test
+    fun reportsSlowestClasses() {
+        val ctx = InMemoryExecutionContext()
+        Java8Parser.builder().reportSlowestAttributions(2).build().parse(
+            ctx,
+            "package a; class A { class Inner {} }",
+            "package b; class B {}",
+            "package c; class C {}"
+        )
+
+        val slowest = ctx.getMessage<Java8ParserAttributionTimings>(
+            Java8ParserAttributionTimings.ATTRIBUTION_TIMINGS
+        )!!.slowest
+        assertEquals(2, slowest.size)
+        assertTrue(slowest[0].duration >= slowest[1].duration)
+        assertTrue(slowest.all { it.className in setOf("a.A", "b.B", "c.C") })
+    }
+
+    @Test
+    fun disabled() {
+        val ctx = InMemoryExecutionContext()
+        Java8Parser.builder().reportSlowestAttributions(0).build().parse(ctx, "class A {}")
+        assertNull(ctx.getMessage<Java8ParserAttributionTimings>(Java8ParserAttributionTimings.ATTRIBUTION_TIMINGS))
+    }
+}
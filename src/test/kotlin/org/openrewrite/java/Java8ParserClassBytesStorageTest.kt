@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.DynamicTest
+import org.junit.jupiter.api.DynamicTest.dynamicTest
+import org.junit.jupiter.api.TestFactory
+import org.openrewrite.Parser
+import java.nio.file.Files
+
+class Java8ParserClassBytesStorageTest : Java8ParserFixture {
+
+    private val libClass: ByteArray by lazy { libClass(Files.createTempDirectory("class-bytes-storage")) }
+
+    @TestFactory
+    fun classBytesResolve(): List<DynamicTest> = Java8Parser.ClassBytesStorage.values().map { storage ->
+        dynamicTest(storage.name) {
+            val parser = Java8Parser.builder()
+                .classpath(libClass)
+                .classBytesStorage(storage)
+                .build()
+            assertEquals(listOf("lib.Lib"), parser.fieldTypes("class User { lib.Lib lib; }"))
+        }
+    }
+
+    @TestFactory
+    fun forkedDependenciesResolve(): List<DynamicTest> = Java8Parser.ClassBytesStorage.values().map { storage ->
+        dynamicTest(storage.name) {
+            val parser = Java8Parser.builder()
+                .classpath(libClass)
+                .classBytesStorage(storage)
+                .dependsOn(listOf(Parser.Input.fromString("package dep; public class Dep {}")))
+                .build()
+
+            // forks are given the dependencies as class files, stored the same way as the rest of the class bytes
+            val fork = parser.fork()
+            assertEquals(listOf("lib.Lib", "dep.Dep"), fork.fieldTypes("class User { lib.Lib lib; dep.Dep dep; }"))
+        }
+    }
+}
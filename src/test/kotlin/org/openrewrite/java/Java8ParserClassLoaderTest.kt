@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import org.openrewrite.java.tree.J
+
+class Java8ParserClassLoaderTest : Java8ParserFixture {
+    private val javac = "com.sun.tools.javac.main.JavaCompiler"
+
+    @Test
+    fun javacIsLoadedFromToolsJarAlone() {
+        // tools.jar isn't on this test's classpath, just as it isn't on that of most processes using the parser
+        assertThrows(ClassNotFoundException::class.java) { Class.forName(javac, false, javaClass.classLoader) }
+
+        assertEquals(listOf("java.lang.String"), Java8Parser.builder().build().fieldTypes("class A { String s; }"))
+
+        val toolsAware = Java8Parser.Builder.toolsAwareClassLoader!!
+        val tools = toolsAware.loadClass(javac).classLoader
+        assertSame(Java8Parser.Builder.toolsClassLoader, tools)
+        assertNull(tools.parent)
+    }
+
+    @Test
+    fun parserIsLoadedApartFromEverythingElse() {
+        Java8Parser.builder().build()
+        val toolsAware = Java8Parser.Builder.toolsAwareClassLoader!!
+
+        assertSame(toolsAware, toolsAware.loadClass("org.openrewrite.java.ReloadableJava8Parser").classLoader)
+        // the trees it returns are the caller's own
+        assertSame(Java8Parser::class.java, toolsAware.loadClass(Java8Parser::class.java.name))
+        assertSame(J::class.java, toolsAware.loadClass(J::class.java.name))
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.openrewrite.InMemoryExecutionContext
+import org.openrewrite.java.tree.J
+import java.nio.file.Files
+import java.nio.file.Path
+
+class Java8ParserClasspathEntryTest : Java8ParserFixture {
+
+    private fun jarFile(classes: Path, jar: Path): Path = Files.write(jar, jar(classes))
+
+    private fun Java8Parser.parseUser(source: String = "class User { lib.Lib lib; }"): J.CompilationUnit {
+        reset()
+        return parse(InMemoryExecutionContext(), source)[0]
+    }
+
+    @Test
+    fun typesResolveOnceEntryIsAddedAndGoMissingOnceRemoved(@TempDir dir: Path) {
+        val lib = compileLib(dir)
+        val parser = Java8Parser.builder().classpath(emptyList()).build()
+
+        // package lib is looked up and found missing before the entry is added
+        assertNotEquals("lib.Lib", parser.parseUser().fieldType())
+
+        parser.addClasspathEntry(lib)
+        assertEquals("lib.Lib", parser.parseUser().fieldType())
+
+        parser.removeClasspathEntry(lib)
+        assertNotEquals("lib.Lib", parser.parseUser().fieldType())
+
+        parser.addClasspathEntry(lib)
+        assertEquals("lib.Lib", parser.parseUser().fieldType())
+    }
+
+    @Test
+    fun jarRebuiltAtTheSamePathIsReadAgainOnceReAdded(@TempDir dir: Path) {
+        val libJar = jarFile(compileLib(dir.resolve("v1")), dir.resolve("lib.jar"))
+        val parser = Java8Parser.builder().classpath(listOf(libJar)).build()
+        val user = "class User { lib.Added added; }"
+
+        assertNotEquals("lib.Added", parser.parseUser(user).fieldType())
+
+        parser.removeClasspathEntry(libJar)
+        jarFile(compileLib(dir.resolve("v2"), "package lib; public class Lib {}", "package lib; public class Added {}"), libJar)
+        parser.addClasspathEntry(libJar)
+        assertEquals("lib.Added", parser.parseUser(user).fieldType())
+    }
+
+    @Test
+    fun typesFromOtherEntriesStillResolveOnceAnEntryIsRemoved(@TempDir dir: Path) {
+        val lib = compileLib(dir.resolve("lib"))
+        val other = compileLib(dir.resolve("other"), "package other; public class Other {}")
+        val parser = Java8Parser.builder().classpath(listOf(lib, other)).build()
+
+        assertEquals("other.Other", parser.parseUser("class User { other.Other other; }").fieldType())
+        parser.removeClasspathEntry(lib)
+        assertEquals("other.Other", parser.parseUser("class User { other.Other other; }").fieldType())
+        assertNotEquals("lib.Lib", parser.parseUser().fieldType())
+    }
+}
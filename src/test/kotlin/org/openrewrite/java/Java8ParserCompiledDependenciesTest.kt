@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.openrewrite.Parser
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.UUID
+
+class Java8ParserCompiledDependenciesTest : Java8ParserFixture {
+
+    // a package of its own for each test, so that no other test has compiled the same dependencies
+    private val pkg = "dep" + UUID.randomUUID().toString().replace("-", "")
+    private val user = "class User { $pkg.Dep dep; }"
+
+    private fun build(vararg dependsOn: Parser.Input, classpath: List<Path>? = null): Java8Parser =
+        Java8Parser.builder()
+            .precompileDependencies(true)
+            .dependsOn(dependsOn.toList())
+            .apply { if (classpath != null) classpath(classpath) }
+            .build()
+
+    private fun compilations() = Java8Parser.Builder.dependencyCompilations.get()
+
+    @Test
+    fun sameInputsHit() {
+        val dep = Parser.Input.fromString("package $pkg; public class Dep {}")
+        val before = compilations()
+
+        assertEquals("$pkg.Dep", build(dep).fieldType(user))
+        assertEquals("$pkg.Dep", build(dep).fieldType(user))
+        assertEquals(before + 1, compilations())
+    }
+
+    @Test
+    fun sameSourcesHit() {
+        val source = "package $pkg; public class Dep {}"
+        val before = compilations()
+
+        assertEquals("$pkg.Dep", build(Parser.Input.fromString(source)).fieldType(user))
+        assertEquals("$pkg.Dep", build(Parser.Input.fromString(source)).fieldType(user))
+        assertEquals(before + 1, compilations())
+    }
+
+    @Test
+    fun changedSourcesMiss() {
+        val before = compilations()
+
+        assertEquals("$pkg.Dep", build(Parser.Input.fromString("package $pkg; public class Dep {}")).fieldType(user))
+        assertEquals("$pkg.Dep", build(Parser.Input.fromString("package $pkg; public class Dep { int n; }")).fieldType(user))
+        assertEquals(before + 2, compilations())
+    }
+
+    @Test
+    fun classpathEntryRebuiltInPlaceMisses(@TempDir dir: Path) {
+        val dep = Parser.Input.fromString("package $pkg; public class Dep {}")
+        val before = compilations()
+
+        assertEquals("$pkg.Dep", build(dep, classpath = listOf(dir)).fieldType(user))
+        assertEquals("$pkg.Dep", build(dep, classpath = listOf(dir)).fieldType(user))
+        assertEquals(before + 1, compilations())
+
+        Files.createDirectories(dir.resolve("other"))
+        Files.write(dir.resolve("other/Other.class"), ByteArray(0))
+        assertEquals("$pkg.Dep", build(dep, classpath = listOf(dir)).fieldType(user))
+        assertEquals(before + 2, compilations())
+    }
+
+    @Test
+    fun failureIsCachedAndFallsBackToSources() {
+        // doesn't compile on its own, so every parser parses and attributes the source instead
+        val dep = Parser.Input.fromString("package $pkg; public class Dep { Missing missing; }")
+        val before = compilations()
+
+        assertEquals("$pkg.Dep", build(dep).fieldType(user))
+        assertEquals("$pkg.Dep", build(dep).fieldType(user))
+        assertEquals(before + 1, compilations())
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.openrewrite.InMemoryExecutionContext
+import org.openrewrite.Parser
+import org.openrewrite.java.tree.J
+import org.openrewrite.java.tree.TypeUtils
+import java.io.ByteArrayInputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.net.InetAddress
+import java.net.Socket
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.time.Duration
+import java.util.Properties
+import java.util.concurrent.TimeUnit
+
+class Java8ParserDaemonTest {
+
+    private fun runDaemon(stateFile: Path, maxIdleParsers: Int = 2, maxClasspaths: Int = 2): Java8ParserDaemon {
+        val daemon = Java8ParserDaemon(stateFile, TimeUnit.MINUTES.toMillis(1), 1, maxIdleParsers, maxClasspaths)
+        Thread { daemon.run() }.apply {
+            isDaemon = true
+            start()
+        }
+        while (!Files.exists(stateFile)) {
+            Thread.sleep(10)
+        }
+        return daemon
+    }
+
+    private fun Path.port(): Int {
+        val state = Properties()
+        Files.newInputStream(this).use { state.load(it) }
+        return state.getProperty("port").toInt()
+    }
+
+    private fun request(vararg sources: String) = Java8ParserProtocol.Request(
+        Java8ParserDaemon.processClasspath(), null, StandardCharsets.UTF_8, null,
+        sources.mapIndexed { i, source ->
+            Parser.Input(Paths.get("Source$i.java")) { ByteArrayInputStream(source.toByteArray()) }
+        }
+    )
+
+    private fun J.CompilationUnit.fieldType(): String? =
+        TypeUtils.asClass((classes[0].body.statements[0] as J.VariableDeclarations).variables[0].type)
+            ?.fullyQualifiedName
+
+    @Test
+    fun parsesThroughRunningDaemon(@TempDir dir: Path) {
+        val stateFile = dir.resolve("daemon.properties")
+        runDaemon(stateFile)
+        try {
+            val errors = mutableListOf<Throwable>()
+            val cus = Java8ParserDaemon.connect(stateFile, Java8Parser.builder())
+                .parse(InMemoryExecutionContext { errors.add(it) }, "class A { String s; }")
+
+            assertEquals(emptyList<Throwable>(), errors)
+            assertEquals("java.lang.String", cus[0].fieldType())
+        } finally {
+            // the daemon exits once its state file is gone
+            Files.delete(stateFile)
+        }
+    }
+
+    @Test
+    fun startsDaemonWhenNoneIsRunning(@TempDir dir: Path) {
+        val stateFile = dir.resolve("daemon.properties")
+        try {
+            val cus = Java8ParserDaemon.connect(stateFile, Java8Parser.builder())
+                .parse(InMemoryExecutionContext { throw it }, "class A { String s; }")
+
+            assertTrue(Files.exists(stateFile))
+            assertEquals("java.lang.String", cus[0].fieldType())
+        } finally {
+            Files.deleteIfExists(stateFile)
+        }
+    }
+
+    @Test
+    fun requestWithWrongTokenIsNotAnswered(@TempDir dir: Path) {
+        val stateFile = dir.resolve("daemon.properties")
+        runDaemon(stateFile)
+        try {
+            Socket(InetAddress.getLoopbackAddress(), stateFile.port()).use { socket ->
+                val out = DataOutputStream(socket.getOutputStream())
+                out.writeUTF("not the token")
+                Java8ParserProtocol.writeRequest(out, request("class A {}"))
+
+                assertEquals(-1, DataInputStream(socket.getInputStream()).read())
+            }
+        } finally {
+            Files.delete(stateFile)
+        }
+    }
+
+    @Test
+    fun errorsAreReportedToTheClientAndTheParserIsDiscarded(@TempDir dir: Path) {
+        val stateFile = dir.resolve("daemon.properties")
+        val daemon = runDaemon(stateFile)
+        try {
+            val parser = Java8ParserDaemon.connect(stateFile, Java8Parser.builder().charset(StandardCharsets.UTF_8))
+            val fingerprint = Java8ParserDaemon.fingerprint(request())
+
+            val errors = mutableListOf<Throwable>()
+            // javac 8 overflows its stack entering a lambda as an annotation value
+            parser.parse(InMemoryExecutionContext { errors.add(it) },
+                "class Bad { @B(x -> x) void m() {} } @interface B { Object value(); }")
+
+            assertTrue(errors.any { it.message!!.contains("Failed symbol entering") })
+            assertEquals(0, daemon.idleParsers(fingerprint))
+
+            parser.parse(InMemoryExecutionContext { throw it }, "class A {}")
+            assertEquals(1, daemon.idleParsers(fingerprint))
+        } finally {
+            Files.delete(stateFile)
+        }
+    }
+
+    @Test
+    fun dependenciesAndCharsetAreSentToTheDaemon(@TempDir dir: Path) {
+        val stateFile = dir.resolve("daemon.properties")
+        runDaemon(stateFile)
+        try {
+            val parser = Java8ParserDaemon.connect(stateFile, Java8Parser.builder()
+                .dependsOn(listOf(Parser.Input.fromString("package dep; public class Dep {}")))
+                .charset(StandardCharsets.ISO_8859_1))
+
+            val source = "class User { dep.Dep dep; String s = \"é\"; }".toByteArray(StandardCharsets.ISO_8859_1)
+            val cu = parser.parseInputs(listOf(Parser.Input(Paths.get("User.java")) { ByteArrayInputStream(source) }),
+                null, InMemoryExecutionContext { throw it })[0]
+
+            assertEquals("dep.Dep", cu.fieldType())
+            val s = cu.classes[0].body.statements[1] as J.VariableDeclarations
+            assertEquals("é", (s.variables[0].initializer as J.Literal).value)
+        } finally {
+            Files.delete(stateFile)
+        }
+    }
+
+    @Test
+    fun settingsThatCannotBeSentAreRejected(@TempDir dir: Path) {
+        val stateFile = dir.resolve("daemon.properties")
+
+        assertThrows(IllegalArgumentException::class.java) {
+            Java8ParserDaemon.connect(stateFile, Java8Parser.builder().fileTimeout(Duration.ofSeconds(1)))
+        }
+        assertFalse(Files.exists(stateFile))
+    }
+
+    @Test
+    fun idleParsersPerClasspathAreBounded(@TempDir dir: Path) {
+        val daemon = Java8ParserDaemon(dir.resolve("daemon.properties"), 0, 1, 2, 2)
+        repeat(3) { daemon.checkin("a", Java8Parser.builder().build()) }
+
+        assertEquals(2, daemon.idleParsers("a"))
+    }
+
+    @Test
+    fun leastRecentlyUsedClasspathIsEvicted(@TempDir dir: Path) {
+        val daemon = Java8ParserDaemon(dir.resolve("daemon.properties"), 0, 1, 2, 2)
+        daemon.checkin("a", Java8Parser.builder().build())
+        daemon.checkin("b", Java8Parser.builder().build())
+
+        // "a" is used again, so "b" is now the least recently used
+        daemon.checkin("a", daemon.checkout("a", request()))
+        daemon.checkin("c", Java8Parser.builder().build())
+
+        assertEquals(1, daemon.idleParsers("a"))
+        assertEquals(0, daemon.idleParsers("b"))
+        assertEquals(1, daemon.idleParsers("c"))
+    }
+}
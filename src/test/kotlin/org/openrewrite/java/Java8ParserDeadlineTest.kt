@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.openrewrite.InMemoryExecutionContext
+import java.time.Duration
+
+class Java8ParserDeadlineTest {
+
+    @Test
+    fun cancelledBatchReportsRemainingUnitsAndReturnsMappedOnes() {
+        val meters = SimpleMeterRegistry()
+        // cancelled as soon as the first unit has been mapped
+        val parser = Java8Parser.builder()
+            .meterRegistry(meters)
+            .cancellation { (meters.find("rewrite.parse.files").counter()?.count() ?: 0.0) >= 1.0 }
+            .build()
+
+        val errors = mutableListOf<Throwable>()
+        val cus = parser.parse(InMemoryExecutionContext { errors.add(it) },
+            "class A {}", "class B extends A {}", "class C extends B {}")
+
+        assertEquals(listOf("A"), cus.map { it.classes[0].name.simpleName })
+        assertEquals(listOf("Mapping B.java was cancelled", "Mapping C.java was cancelled"), errors.map { it.message })
+    }
+
+    @Test
+    fun batchPastItsDeadlineReportsEveryUnit() {
+        val parser = Java8Parser.builder()
+            .batchTimeout(Duration.ZERO)
+            .build()
+
+        val errors = mutableListOf<Throwable>()
+        val cus = parser.parse(InMemoryExecutionContext { errors.add(it) }, "class A {}", "class B {}")
+
+        assertEquals(emptyList<Any>(), cus)
+        val messages = errors.map { it.message!! }
+        assertTrue(messages.all { it.endsWith("exceeded its deadline") }, messages.toString())
+        assertTrue(messages.contains("Mapping A.java exceeded its deadline"), messages.toString())
+        assertTrue(messages.contains("Mapping B.java exceeded its deadline"), messages.toString())
+    }
+
+    @Test
+    fun unitPastItsDeadlineIsReportedWhileOthersAreMapped() {
+        val parser = Java8Parser.builder()
+            .fileTimeout(Duration.ZERO)
+            .build()
+
+        // mapping checks the deadline every few hundred trees, so only the large unit is stopped
+        val large = "class Large {\n" + (0 until 1000).joinToString("\n") { "    int f$it = $it;" } + "\n}"
+
+        val errors = mutableListOf<Throwable>()
+        val cus = parser.parse(InMemoryExecutionContext { errors.add(it) }, "class Small { int n = 1; }", large)
+
+        assertEquals(listOf("Small"), cus.map { it.classes[0].name.simpleName })
+        assertEquals(listOf("Mapping Large.java exceeded its deadline"), errors.map { it.message })
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordingFile
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.openrewrite.InMemoryExecutionContext
+import java.nio.file.Path
+
+class Java8ParserEventsTest {
+
+    @Test
+    fun recordsEachPhase(@TempDir dir: Path) {
+        val events = listOf("JdkParse", "Attribution", "Mapping", "TypeCacheMiss", "Construction")
+            .map { "org.openrewrite.java8.$it" }
+
+        val recording = Recording()
+        events.forEach { recording.enable(it) }
+        recording.start()
+        Java8Parser.builder().build().parse(InMemoryExecutionContext(), "class A { String s; }")
+        recording.stop()
+
+        val file = dir.resolve("parse.jfr")
+        recording.dump(file)
+        recording.close()
+
+        val recorded = RecordingFile.readAllEvents(file).groupBy { it.eventType.name }
+        assertEquals(events.toSet(), recorded.keys.intersect(events))
+        assertEquals("A", recorded.getValue("org.openrewrite.java8.Attribution")[0].getString("className"))
+        assertTrue(recorded.getValue("org.openrewrite.java8.Mapping")[0].getInt("nodes") > 0)
+        assertTrue(recorded.getValue("org.openrewrite.java8.TypeCacheMiss")
+            .any { it.getString("type") == "java.lang.String" })
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.openrewrite.InMemoryExecutionContext
+
+class Java8ParserFaultIsolationTest : Java8ParserFixture {
+
+    @Test
+    fun unitThatCannotBeEnteredDoesNotCostOthersTheirTypes() {
+        val errors = mutableListOf<Throwable>()
+        val cus = Java8Parser.builder().build().parse(
+            InMemoryExecutionContext { errors.add(it) },
+            "class G1 { G2 g2; String s; }",
+            // javac 8 overflows its stack entering a lambda as an annotation value
+            "class Bad { @B(x -> x) void m() {} } @interface B { Object value(); }",
+            "class G2 { G1 g1; java.util.List<String> l; }"
+        )
+
+        assertTrue(errors.any { it.message == "Failed symbol entering" })
+        assertEquals(listOf("G2", "java.lang.String"), cus.first { it.classes[0].name.simpleName == "G1" }.fieldTypes())
+        assertEquals(listOf("G1", "java.util.List"), cus.first { it.classes[0].name.simpleName == "G2" }.fieldTypes())
+    }
+}
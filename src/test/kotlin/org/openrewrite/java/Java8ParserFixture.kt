@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.openrewrite.InMemoryExecutionContext
+import org.openrewrite.java.tree.J
+import org.openrewrite.java.tree.TypeUtils
+import java.io.ByteArrayOutputStream
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+import javax.tools.ToolProvider
+
+/**
+ * Libraries compiled on the fly, and the types that fields declared against them are attributed with, for tests
+ * of how a parser resolves types from what it is given.
+ */
+interface Java8ParserFixture {
+
+    /**
+     * Compile each source, which declares a public class named after its file, into the `classes` directory of [dir].
+     */
+    fun compileLib(dir: Path, vararg sources: String = arrayOf("package lib; public class Lib {}")): Path {
+        val srcs = sources.map { source ->
+            val pkg = source.substringAfter("package ").substringBefore(";")
+            val name = source.substringAfter("public class ").substringBefore(" ")
+            val src = dir.resolve("src/${pkg.replace('.', '/')}/$name.java")
+            Files.createDirectories(src.parent)
+            Files.write(src, source.toByteArray())
+            src.toString()
+        }
+        val classes = Files.createDirectories(dir.resolve("classes"))
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null,
+            "-d", classes.toString(), *srcs.toTypedArray()))
+        return classes
+    }
+
+    fun libClass(dir: Path): ByteArray = Files.readAllBytes(compileLib(dir).resolve("lib/Lib.class"))
+
+    /**
+     * A jar of every file in [classes], followed by empty entries in a package of their own.
+     */
+    fun jar(classes: Path, fillerEntries: Int = 0): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        ZipOutputStream(bytes).use { zip ->
+            Files.walk(classes).filter { Files.isRegularFile(it) }.sorted().forEach { file ->
+                zip.putNextEntry(ZipEntry(classes.relativize(file).toString().replace('\\', '/')))
+                Files.copy(file, zip)
+                zip.closeEntry()
+            }
+            for (i in 0 until fillerEntries) {
+                zip.putNextEntry(ZipEntry("filler/F$i.txt"))
+                zip.closeEntry()
+            }
+        }
+        return bytes.toByteArray()
+    }
+
+    /**
+     * The types of the fields of the first class, each of which is declared in a statement of its own.
+     */
+    fun J.CompilationUnit.fieldTypes(): List<String?> =
+        classes[0].body.statements.map {
+            TypeUtils.asClass((it as J.VariableDeclarations).variables[0].type)?.fullyQualifiedName
+        }
+
+    fun J.CompilationUnit.fieldType(): String? = fieldTypes()[0]
+
+    /**
+     * Parse [source], which must not report any errors, and give the types of the fields of its first class.
+     */
+    fun Java8Parser.fieldTypes(source: String): List<String?> {
+        val errors = mutableListOf<Throwable>()
+        val cu = parse(InMemoryExecutionContext { errors.add(it) }, source)[0]
+        assertEquals(emptyList<Throwable>(), errors)
+        return cu.fieldTypes()
+    }
+
+    fun Java8Parser.fieldType(source: String): String? = fieldTypes(source)[0]
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.openrewrite.Parser
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class Java8ParserForkTest : Java8ParserFixture {
+
+    private val prototype = Java8Parser.builder()
+        .dependsOn(listOf(Parser.Input.fromString("package dep; public class Dep { public String s; }")))
+        .build()
+
+    @Test
+    fun forkResolvesDependencies() {
+        assertEquals(listOf("dep.Dep"), prototype.fork().fieldTypes("class A { dep.Dep dep; }"))
+        // the second fork is given the class files compiled for the first
+        assertEquals(listOf("dep.Dep"), prototype.fork().fieldTypes("class A { dep.Dep dep; }"))
+    }
+
+    @Test
+    fun forksDoNotShareCompilerState() {
+        val fork = prototype.fork()
+
+        // the same class in both would be reported as a duplicate if they shared a symbol table
+        assertEquals(listOf("dep.Dep"), prototype.fieldTypes("class A { dep.Dep dep; }"))
+        assertEquals(listOf("java.lang.String"), fork.fieldTypes("class A { String s; }"))
+        assertEquals(listOf("java.lang.Integer"), prototype.fork().fieldTypes("class A { Integer i; }"))
+    }
+
+    @Test
+    fun forksParseConcurrently() {
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            val results = executor.invokeAll((0 until 8).map { i ->
+                Callable { prototype.fork().fieldTypes("class A$i { dep.Dep dep; java.util.List<String> l; }") }
+            })
+            results.forEach { assertEquals(listOf("dep.Dep", "java.util.List"), it.get(1, TimeUnit.MINUTES)) }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.stream.Collectors
+
+class Java8ParserInMemoryJarTest : Java8ParserFixture {
+
+    private val user = "class User { lib.Lib lib; }"
+
+    @Test
+    fun jar(@TempDir dir: Path) {
+        val parser = Java8Parser.builder().classpathJars(listOf(jar(compileLib(dir)))).build()
+        assertEquals("lib.Lib", parser.fieldType(user))
+    }
+
+    @Test
+    fun zip64JarReadFromByteBuffer(@TempDir dir: Path) {
+        // more entries than the end of central directory record can count, so the jar is written as ZIP64
+        val jar = jar(compileLib(dir), 0x10000)
+        val buffer = ByteBuffer.allocateDirect(jar.size).put(jar)
+        buffer.flip()
+
+        val parser = Java8Parser.builder().classpathJarBuffers(listOf(buffer)).build()
+        assertEquals("lib.Lib", parser.fieldType(user))
+    }
+
+    @Test
+    fun jarThatCannotBeIndexedInPlaceIsReadFromFile(@TempDir dir: Path) {
+        // offsets in the central directory don't account for a prefix, which only the file-based reader tolerates
+        val jar = ByteArray(100) + jar(compileLib(dir))
+
+        val parser = Java8Parser.builder().classpathJars(listOf(jar)).build()
+        assertEquals("lib.Lib", parser.fieldType(user))
+    }
+
+    @Test
+    fun temporaryCopyIsDeletedOnClose(@TempDir dir: Path) {
+        val before = copies()
+        val parser = Java8Parser.builder().classpathJars(listOf(ByteArray(100) + jar(compileLib(dir)))).build()
+
+        assertEquals("lib.Lib", parser.fieldType(user))
+        assertEquals(1, (copies() - before).size)
+        parser.close()
+        assertEquals(emptySet<Path>(), copies() - before)
+
+        // still usable, from a new copy
+        parser.reset()
+        assertEquals("lib.Lib", parser.fieldType(user))
+        parser.close()
+        assertEquals(emptySet<Path>(), copies() - before)
+    }
+
+    private fun copies(): Set<Path> = Files.list(Paths.get(System.getProperty("java.io.tmpdir"))).use { files ->
+        files.filter { it.fileName.toString().startsWith("rewrite-java-8-jar") }.collect(Collectors.toSet())
+    }
+}
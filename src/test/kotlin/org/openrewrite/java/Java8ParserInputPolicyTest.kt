@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import org.openrewrite.InMemoryExecutionContext
+import org.openrewrite.Parser
+import org.openrewrite.java.tree.J
+import org.openrewrite.java.tree.TypeUtils
+import java.io.ByteArrayInputStream
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.function.Supplier
+
+class Java8ParserInputPolicyTest {
+
+    private fun input(path: String, source: String): Parser.Input =
+        Parser.Input(Paths.get(path)) { ByteArrayInputStream(source.toByteArray()) }
+
+    private fun J.CompilationUnit.localType(): String? {
+        val m = classes[0].body.statements[0] as J.MethodDeclaration
+        return TypeUtils.asClass((m.body!!.statements[0] as J.VariableDeclarations).variables[0].type)
+            ?.fullyQualifiedName
+    }
+
+    @Test
+    fun eachActionAppliesToTheInputsItMatches() {
+        val policy = Java8ParserInputPolicy.parseAll()
+            .matching("gen/**", Java8ParserInputPolicy.Action.SKIP)
+            .largerThan(100, Java8ParserInputPolicy.Action.SYNTAX_ONLY)
+
+        val inputs = listOf(
+            input("src/A.java", "class A { void m() { String s = \"a\"; } }"),
+            input("src/Large.java", "class Large { void m() { String s = \"${"x".repeat(100)}\"; } }"),
+            input("gen/Skipped.java", "class Skipped { static String s = \"skipped\"; }"),
+            input("src/B.java", "class B { void m() { String s = Skipped.s; } }")
+        )
+
+        val errors = mutableListOf<Throwable>()
+        val ctx = InMemoryExecutionContext { errors.add(it) }
+        val cus = Java8Parser.builder().inputPolicy(policy).build().parseInputs(inputs, null, ctx)
+
+        assertEquals(emptyList<Throwable>(), errors)
+        assertEquals(listOf("A", "Large", "B"), cus.map { it.classes[0].name.simpleName })
+
+        // the skipped input's declarations still attribute the inputs that refer to them
+        assertEquals("java.lang.String", cus[0].localType())
+        assertNull(cus[1].localType())
+        assertEquals("java.lang.String", cus[2].localType())
+
+        assertEquals(setOf(Paths.get("gen/Skipped.java")), ctx.getMessage<Set<Path>>(Java8ParserInputPolicy.SKIPPED_INPUTS))
+    }
+
+    @Test
+    fun nothingIsSkippedByDefault() {
+        val ctx = InMemoryExecutionContext { throw it }
+        val cus = Java8Parser.builder().build().parseInputs(
+            listOf(input("gen/A.java", "class A { void m() { String s; } }")),
+            null, ctx)
+
+        assertEquals("java.lang.String", cus[0].localType())
+        assertNull(ctx.getMessage<Set<Path>>(Java8ParserInputPolicy.SKIPPED_INPUTS))
+    }
+
+    @Test
+    fun generatedSourcesAreRecognizedByAnnotation() {
+        val policy = Java8ParserInputPolicy.parseAll().generated(Java8ParserInputPolicy.Action.SKIP)
+
+        assertEquals(Java8ParserInputPolicy.Action.SKIP,
+            policy.actionFor(Paths.get("A.java"), "@Generated(\"x\") class A {}"))
+        assertEquals(Java8ParserInputPolicy.Action.SKIP,
+            policy.actionFor(Paths.get("A.java"), "@javax.annotation.processing.Generated(\"x\") class A {}"))
+        assertEquals(Java8ParserInputPolicy.Action.PARSE,
+            policy.actionFor(Paths.get("A.java"), "@GeneratedBy class A {}"))
+    }
+
+    @Test
+    fun sourceIsOnlyReadWhenARuleNeedsIt() {
+        var reads = 0
+        val source = Supplier { reads++; "class A {}" }
+
+        val byPath = Java8ParserInputPolicy.parseAll().matching("gen/**", Java8ParserInputPolicy.Action.SKIP)
+        assertEquals(Java8ParserInputPolicy.Action.SKIP, byPath.actionFor(Paths.get("gen/A.java"), source))
+        assertEquals(Java8ParserInputPolicy.Action.PARSE, byPath.actionFor(Paths.get("src/A.java"), source))
+        assertEquals(0, reads)
+
+        // the first rule to match is decided by path alone, and later rules read the source just once
+        val bySource = byPath
+            .largerThan(1000, Java8ParserInputPolicy.Action.SYNTAX_ONLY)
+            .generated(Java8ParserInputPolicy.Action.SKIP)
+        assertEquals(Java8ParserInputPolicy.Action.SKIP, bySource.actionFor(Paths.get("gen/A.java"), source))
+        assertEquals(0, reads)
+        assertEquals(Java8ParserInputPolicy.Action.PARSE, bySource.actionFor(Paths.get("src/A.java"), source))
+        assertEquals(1, reads)
+    }
+}
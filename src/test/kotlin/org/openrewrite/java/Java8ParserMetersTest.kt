@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import io.micrometer.core.instrument.Metrics
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.openrewrite.InMemoryExecutionContext
+import org.openrewrite.Parser
+
+class Java8ParserMetersTest {
+
+    @Test
+    fun recordsToConfiguredRegistry() {
+        val meters = SimpleMeterRegistry()
+        Java8Parser.builder().meterRegistry(meters).build().parse(
+            InMemoryExecutionContext(),
+            "class A {\n    String s;\n}",
+            "class B {}"
+        )
+
+        assertEquals(2.0, meters.get("rewrite.parse.files").counter().count())
+        assertEquals(2, meters.get("rewrite.parse.bytes").summary().count())
+        assertEquals(35.0, meters.get("rewrite.parse.bytes").summary().totalAmount())
+        assertEquals(4.0, meters.get("rewrite.parse.lines").summary().totalAmount())
+        assertTrue(meters.get("rewrite.parse.nodes").summary().totalAmount() > 0)
+        assertTrue(meters.get("rewrite.parse.types").counter().count() > 0)
+        assertEquals(1, meters.get("rewrite.parse.throughput").summary().count())
+        assertEquals(3, meters.get("rewrite.parse").timers().size)
+    }
+
+    @Test
+    fun configuredRegistryReplacesGlobalAndDependenciesAreNotRecorded() {
+        val global = SimpleMeterRegistry()
+        Metrics.addRegistry(global)
+        val meters = SimpleMeterRegistry()
+        try {
+            Java8Parser.builder()
+                .meterRegistry(meters)
+                .dependsOn(listOf(Parser.Input.fromString("package dep; public class Dep {}")))
+                .build()
+                .parse(InMemoryExecutionContext(), "class A { dep.Dep dep; }")
+        } finally {
+            Metrics.removeRegistry(global)
+        }
+
+        assertEquals(0.0, global.find("rewrite.parse.files").counter()?.count() ?: 0.0)
+        assertEquals(1.0, meters.get("rewrite.parse.files").counter().count())
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.openrewrite.InMemoryExecutionContext
+import org.openrewrite.java.tree.J
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.stream.Collectors
+
+class Java8ParserSpillTest {
+
+    private val sources = listOf(
+        "class A { int a; }",
+        "class B extends A { String b() { return \"b\"; } }",
+        "class C { A a = new B(); }"
+    )
+
+    @Test
+    fun unitsAreSpilledAndPagedBackIn(@TempDir dir: Path) {
+        val parser = Java8Parser.builder()
+            .spillTo(dir)
+            .maxResidentCompilationUnits(1)
+            .build()
+
+        val cus = parser.parse(InMemoryExecutionContext { throw it }, *sources.toTypedArray())
+        assertTrue(cus is SpilledCompilationUnits)
+        (cus as SpilledCompilationUnits).use {
+            assertEquals(3, cus.size)
+            assertEquals(3, spilled(dir).size)
+
+            // only the most recently used unit stays on the heap, so the first one is decoded again
+            val c = cus[2]
+            assertSame(c, cus[2])
+            val a = cus[0]
+            assertNotSame(c, cus[2])
+
+            assertEquals(sources, cus.map { it.printTrimmed() })
+            assertEquals("A", a.classes[0].name.simpleName)
+
+            // types are shared by identity between units decoded separately
+            val field = (cus[2].classes[0].body.statements[0] as J.VariableDeclarations).variables[0].type
+            assertSame(cus[0].classes[0].type, field)
+        }
+
+        // closing deletes the spill files and the directory created for them
+        Files.list(dir).use { assertFalse(it.findAny().isPresent) }
+    }
+
+    @Test
+    fun unitsStayResidentUpToTheLimit(@TempDir dir: Path) {
+        val parser = Java8Parser.builder()
+            .spillTo(dir)
+            .maxResidentCompilationUnits(sources.size)
+            .build()
+
+        (parser.parse(InMemoryExecutionContext { throw it }, *sources.toTypedArray()) as SpilledCompilationUnits).use { cus ->
+            val first = cus.map { it }
+            first.zip(cus).forEach { (before, after) -> assertSame(before, after) }
+        }
+    }
+
+    @Test
+    fun withoutSpillDirectoryUnitsAreAPlainList() {
+        val cus = Java8Parser.builder().build().parse(InMemoryExecutionContext { throw it }, *sources.toTypedArray())
+        assertFalse(cus is SpilledCompilationUnits)
+        assertEquals(sources, cus.map { it.printTrimmed() })
+    }
+
+    private fun spilled(dir: Path): List<Path> = Files.walk(dir).use { files ->
+        files.filter { it.toString().endsWith(".lst") }.collect(Collectors.toList())
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.openrewrite.InMemoryExecutionContext
+
+class Java8ParserWarmupTest {
+
+    @Test
+    fun warmUpIsNotRecorded() {
+        val meters = SimpleMeterRegistry()
+        val parser = Java8Parser.builder().meterRegistry(meters).build()
+
+        val warmup = parser.warmUp(3)
+        assertTrue(warmup.iterations in 1..3)
+        assertEquals(0.0, meters.get("rewrite.parse.files").counter().count())
+        assertEquals(0L, meters.get("rewrite.parse").timers().sumOf { it.count() })
+
+        // real work afterwards is recorded, and its attribution timings don't include the warm-up corpus
+        val ctx = InMemoryExecutionContext()
+        parser.parse(ctx, "class A {}")
+        assertEquals(1.0, meters.get("rewrite.parse.files").counter().count())
+        val timings = ctx.getMessage<Java8ParserAttributionTimings>(Java8ParserAttributionTimings.ATTRIBUTION_TIMINGS)!!
+        assertEquals(listOf("A"), timings.slowest.map { it.className })
+    }
+
+    @Test
+    fun maxIterationsMustBePositive() {
+        val parser = Java8Parser.builder().build()
+        assertThrows(IllegalArgumentException::class.java) { parser.warmUp(0) }
+        assertThrows(IllegalArgumentException::class.java) { parser.warmUp(-1) }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.openrewrite.InMemoryExecutionContext
+import org.openrewrite.Parser
+import org.openrewrite.java.tree.J
+import java.io.ByteArrayInputStream
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.time.Duration
+import java.util.concurrent.TimeoutException
+
+class Java8ParserWorkerPoolTest {
+
+    private fun input(path: String): Parser.Input {
+        val className = Paths.get(path).fileName.toString().removeSuffix(".java")
+        val pkg = Paths.get(path).parent.toString().replace('/', '.')
+        val source = "package $pkg; class $className {}".toByteArray()
+        return Parser.Input(Paths.get(path)) { ByteArrayInputStream(source) }
+    }
+
+    @Test
+    fun compilationUnitsAreInInputOrder() {
+        // the larger directory is partitioned first, out of input order
+        val inputs = listOf("a/A1.java", "b/B1.java", "b/B2.java", "c/C1.java", "b/B3.java", "a/A2.java")
+            .map { input(it) }
+
+        Java8ParserWorkerPool.builder().workers(2).build().use { pool ->
+            val errors = mutableListOf<Throwable>()
+            val cus = pool.parseInputs(inputs, null, InMemoryExecutionContext { errors.add(it) })
+
+            assertEquals(emptyList<Throwable>(), errors)
+            assertEquals(inputs.map(Parser.Input::getPath), cus.map { it.sourcePath })
+        }
+    }
+
+    @Test
+    fun requestOverItsDeadlineIsReportedAndItsWorkerReplaced() {
+        val inputs = listOf(input("a/A1.java"))
+
+        // less than a worker JVM takes to start, so every request is over its deadline
+        Java8ParserWorkerPool.builder().workers(1).requestTimeout(Duration.ofMillis(1)).build().use { pool ->
+            repeat(2) {
+                val errors = mutableListOf<Throwable>()
+                val cus = pool.parseInputs(inputs, null, InMemoryExecutionContext { errors.add(it) })
+
+                assertEquals(emptyList<J.CompilationUnit>(), cus)
+                assertTrue(errors.single().cause is TimeoutException)
+            }
+        }
+    }
+
+    @Test
+    fun partitionsKeepDirectoriesTogether() {
+        val inputs = listOf("a/A1.java", "b/B1.java", "b/B2.java", "a/A2.java").map { input(it) }
+
+        val partitions = Java8ParserWorkerPool.partition(inputs, 2)
+            .map { partition -> partition.map { it.path.parent }.toSet() }
+        assertEquals(setOf(setOf<Path>(Paths.get("a")), setOf<Path>(Paths.get("b"))), partitions.toSet())
+    }
+}